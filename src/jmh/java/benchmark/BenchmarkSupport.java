@@ -0,0 +1,75 @@
+package benchmark;
+
+import commandparser.CommandParser;
+import exception.GenesisException;
+import storage.Storage;
+import task.Task;
+import taskmanager.TaskManager;
+import ui.Ui;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Builds the Genesis object graph on top of a throwaway data directory for the benchmarks.
+ */
+public class BenchmarkSupport {
+    public final Path dataDirectory;
+    public final TaskManager taskManager;
+    public final Storage storage;
+    public final CommandParser parser;
+    public final Ui ui;
+
+    /**
+     * Creates an empty data directory and wires a TaskManager, Storage, CommandParser and Ui to it.
+     *
+     * @param isJournalMode Whether the storage appends to a journal instead of rewriting its snapshot.
+     * @throws IOException If the data directory cannot be created.
+     */
+    public BenchmarkSupport(boolean isJournalMode) throws IOException {
+        this.dataDirectory = Files.createTempDirectory("genesis-jmh");
+        this.taskManager = new TaskManager();
+        this.storage = new Storage(taskManager, dataDirectory, isJournalMode, 0, Integer.MAX_VALUE);
+        this.parser = new CommandParser(taskManager, storage);
+        this.ui = new Ui(taskManager, parser);
+    }
+
+    /**
+     * Returns parsed tasks as produced by {@link TaskDataGenerator}.
+     *
+     * @param count The number of tasks.
+     * @return The tasks.
+     */
+    public static List<Task> generateTasks(int count) {
+        Random random = new Random(42);
+        List<Task> tasks = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                tasks.add(CommandParser.parseTask(TaskDataGenerator.taskLine(i, random)));
+            }
+        } catch (GenesisException e) {
+            throw new IllegalStateException(e);
+        }
+        return tasks;
+    }
+
+    /**
+     * Stops the storage and deletes the data directory.
+     *
+     * @throws IOException If the directory cannot be deleted.
+     */
+    public void close() throws IOException {
+        storage.close();
+        try (Stream<Path> paths = Files.walk(dataDirectory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package benchmark;
+
+import command.Command;
+import exception.GenesisException;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the find command for rare, common and case-insensitive searches.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CommandParserBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private BenchmarkSupport support;
+    private Command rareSearch;
+    private Command commonSearch;
+    private Command caseInsensitiveSearch;
+
+    @Setup
+    public void setUp() throws IOException {
+        support = new BenchmarkSupport(true);
+        support.taskManager.loadTasks(BenchmarkSupport.generateTasks(size));
+        rareSearch = Command.parse("find " + (size - 1));
+        commonSearch = Command.parse("find homework");
+        caseInsensitiveSearch = Command.parse("find -i HOMEWORK AND essay");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        support.close();
+    }
+
+    @Benchmark
+    public String findRare() throws GenesisException {
+        return support.parser.handleFind(rareSearch);
+    }
+
+    @Benchmark
+    public String findCommon() throws GenesisException {
+        return support.parser.handleFind(commonSearch);
+    }
+
+    @Benchmark
+    public String findCaseInsensitive() throws GenesisException {
+        return support.parser.handleFind(caseInsensitiveSearch);
+    }
+}
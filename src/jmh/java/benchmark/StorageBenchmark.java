@@ -0,0 +1,67 @@
+package benchmark;
+
+import commandparser.CommandParser;
+import storage.Storage;
+import taskmanager.TaskManager;
+import ui.Ui;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures loading the task file at startup and writing a full snapshot.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StorageBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private BenchmarkSupport writer;
+    private BenchmarkSupport loader;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        writer = new BenchmarkSupport(false);
+        writer.taskManager.loadTasks(BenchmarkSupport.generateTasks(size));
+        loader = new BenchmarkSupport(false);
+        TaskDataGenerator.write(loader.dataDirectory.resolve("tasks.txt"), size, 42);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        writer.close();
+        loader.close();
+    }
+
+    /**
+     * Loads the generated task file into a fresh TaskManager, as happens at startup. Loading never
+     * writes, so every invocation can read the same directory.
+     */
+    @Benchmark
+    public TaskManager loadTasks() {
+        TaskManager taskManager = new TaskManager();
+        Storage storage = new Storage(taskManager, loader.dataDirectory, false, 0, Integer.MAX_VALUE);
+        CommandParser parser = new CommandParser(taskManager, storage);
+        storage.loadTasks(parser, new Ui(taskManager, parser));
+        storage.close();
+        return taskManager;
+    }
+
+    @Benchmark
+    public void writeTasks() {
+        writer.storage.writeTasks();
+    }
+}
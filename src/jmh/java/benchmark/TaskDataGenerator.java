@@ -0,0 +1,73 @@
+package benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * Generates synthetic task files in the command-text format of data/tasks.txt.
+ *
+ * Run with {@code ./gradlew generateTasks -Pcount=100000} to overwrite data/tasks.txt.
+ */
+public class TaskDataGenerator {
+    private static final String[] WORDS = {
+        "read", "write", "submit", "review", "plan", "book", "call", "buy", "fix", "clean",
+        "report", "homework", "lecture", "meeting", "groceries", "flight", "project", "essay"
+    };
+    private static final LocalDate BASE_DATE = LocalDate.of(2024, 1, 1);
+
+    /**
+     * Returns the command text of the task at the given position. Every position gives a different
+     * description, so generated lists never contain duplicates.
+     *
+     * @param index The position of the task.
+     * @param random The source of randomness for words and dates.
+     * @return The command text, e.g. "deadline submit essay 42 /by 2024-03-05".
+     */
+    public static String taskLine(int index, Random random) {
+        String description = WORDS[random.nextInt(WORDS.length)] + " "
+                + WORDS[random.nextInt(WORDS.length)] + " " + index;
+        LocalDate date = BASE_DATE.plusDays(random.nextInt(730));
+        switch (index % 3) {
+        case 0:
+            return "todo " + description;
+        case 1:
+            return "deadline " + description + " /by " + date;
+        default:
+            return "event " + description + " /from " + date + " /to " + date.plusDays(random.nextInt(14));
+        }
+    }
+
+    /**
+     * Writes a task file with the given number of tasks.
+     *
+     * @param file The file to write.
+     * @param count The number of tasks.
+     * @param seed The random seed, so runs can be reproduced.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(Path file, int count, long seed) throws IOException {
+        Random random = new Random(seed);
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < count; i++) {
+                writer.write(taskLine(i, random));
+                writer.write(System.lineSeparator());
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        Path file = Paths.get(args.length > 1 ? args[1] : "data/tasks.txt");
+        write(file, count, 42);
+        System.out.println("Wrote " + count + " tasks to " + file);
+    }
+}
@@ -0,0 +1,66 @@
+package benchmark;
+
+import exception.GenesisException;
+import task.Task;
+import taskmanager.TaskManager;
+import todo.Todo;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures adding tasks (including the duplicate check) and listing them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TaskManagerBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private TaskManager taskManager;
+    private Task duplicate;
+
+    @Setup
+    public void setUp() {
+        taskManager = new TaskManager();
+        taskManager.loadTasks(BenchmarkSupport.generateTasks(size));
+        duplicate = new Todo(taskManager.getTasks().get(size / 2).getDescription());
+    }
+
+    /**
+     * Adds a new task and deletes it again, so the list keeps its size between invocations.
+     */
+    @Benchmark
+    public String addUniqueTask() throws GenesisException {
+        taskManager.addTask(new Todo("benchmark task"), false);
+        return taskManager.deleteTask(taskManager.size() - 1);
+    }
+
+    @Benchmark
+    public String rejectDuplicateTask() {
+        try {
+            return taskManager.addTask(duplicate, true);
+        } catch (GenesisException e) {
+            return e.getMessage();
+        }
+    }
+
+    @Benchmark
+    public String listTasks() {
+        return taskManager.listTasks();
+    }
+
+    @Benchmark
+    public String listFirstPage() {
+        return taskManager.listTasks(0, 20);
+    }
+}
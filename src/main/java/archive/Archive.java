@@ -0,0 +1,230 @@
+package archive;
+
+import commandparser.CommandParser;
+import exception.GenesisException;
+import task.Task;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cold storage for completed tasks that no longer need to be in the task list.
+ *
+ * Every archive run writes one GZIP-compressed segment file, with one line per task: its id followed
+ * by the command that adds it. Segments are never changed once written. An append-only index names
+ * each segment with its task count and id range; a segment only counts once its index line is on
+ * disk, so a run that fails halfway leaves nothing behind but an ignored file. Index lines that cannot
+ * be read are skipped, but still count towards naming new segments, so their files are never replaced.
+ */
+public class Archive {
+    private static final String INDEX = "index";
+
+    private final Path directory;
+    private final List<Segment> segments = new ArrayList<>();
+    private int indexLines;
+    private long indexLength;
+    private boolean isLoaded;
+
+    /**
+     * Constructs an Archive kept in the given directory. Nothing is read until the archive is used.
+     *
+     * @param directory The directory holding the segments and their index.
+     */
+    public Archive(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the number of archived tasks, read from the index without opening any segment.
+     *
+     * @return The number of archived tasks.
+     * @throws IOException If the index cannot be read.
+     */
+    public synchronized int getTaskCount() throws IOException {
+        load();
+        int count = 0;
+        for (Segment segment : segments) {
+            count += segment.count;
+        }
+        return count;
+    }
+
+    public synchronized int getSegmentCount() throws IOException {
+        load();
+        return segments.size();
+    }
+
+    /**
+     * Writes the tasks to a new segment and adds it to the index, syncing both to disk.
+     *
+     * @param tasks The completed tasks to archive, in list order.
+     * @throws IOException If writing fails, in which case the tasks are not archived.
+     */
+    public synchronized void append(List<Task> tasks) throws IOException {
+        assert !tasks.isEmpty() : "Should not archive an empty segment!";
+        load();
+        Files.createDirectories(directory);
+        String name = String.format("segment-%06d.gz", indexLines + 1);
+        Path temp = directory.resolve(name + ".tmp");
+        long minId = Long.MAX_VALUE;
+        long maxId = Long.MIN_VALUE;
+        try (FileOutputStream file = new FileOutputStream(temp.toFile());
+                BufferedWriter out = new BufferedWriter(new OutputStreamWriter(
+                        new GZIPOutputStream(file, 1 << 16), StandardCharsets.UTF_8))) {
+            for (Task task : tasks) {
+                out.write(task.getId() + " " + task.getInput());
+                out.newLine();
+                minId = Math.min(minId, task.getId());
+                maxId = Math.max(maxId, task.getId());
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temp, directory.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        Segment segment = new Segment(name, tasks.size(), minId, maxId);
+        byte[] line = (segment + "\n").getBytes(StandardCharsets.UTF_8);
+        try (FileChannel index = FileChannel.open(directory.resolve(INDEX), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE)) {
+            index.truncate(indexLength);
+            index.write(ByteBuffer.wrap(line), indexLength);
+            index.force(false);
+        }
+        indexLength += line.length;
+        indexLines++;
+        segments.add(segment);
+    }
+
+    /**
+     * Streams every archived task to the action, oldest segment first, decompressing one segment at
+     * a time. Archived tasks are always complete.
+     *
+     * A crash between archiving tasks and saving the list can archive them again in a later segment.
+     * Such a task is only passed to the action once. Only segments whose id ranges overlap can share
+     * a task, so only their ids are remembered.
+     *
+     * @param action The action to run on each task.
+     * @throws IOException If a segment cannot be read.
+     */
+    public void scan(Consumer<Task> action) throws IOException {
+        List<Segment> current;
+        synchronized (this) {
+            load();
+            current = new ArrayList<>(segments);
+        }
+        Set<Long> seen = new HashSet<>();
+        for (int i = 0; i < current.size(); i++) {
+            Segment segment = current.get(i);
+            boolean isRepeatedLater = overlapsAny(segment, current.subList(i + 1, current.size()));
+            boolean mayRepeat = overlapsAny(segment, current.subList(0, i));
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(directory.resolve(segment.name)), 1 << 16),
+                    StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    Task task = parseLine(line);
+                    if (task == null || (mayRepeat && seen.contains(task.getId()))) {
+                        continue;
+                    }
+                    if (isRepeatedLater) {
+                        seen.add(task.getId());
+                    }
+                    action.accept(task);
+                }
+            }
+        }
+    }
+
+    private static boolean overlapsAny(Segment segment, List<Segment> others) {
+        for (Segment other : others) {
+            if (other.minId <= segment.maxId && segment.minId <= other.maxId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Task parseLine(String line) {
+        int space = line.indexOf(' ');
+        try {
+            Task task = CommandParser.parseTask(line.substring(space + 1));
+            task.setId(Long.parseLong(line.substring(0, space)));
+            task.mark();
+            return task;
+        } catch (GenesisException | RuntimeException e) {
+            System.out.println("Skipping invalid archived task \"" + line + "\"");
+            return null;
+        }
+    }
+
+    private void load() throws IOException {
+        if (isLoaded) {
+            return;
+        }
+        Path index = directory.resolve(INDEX);
+        if (Files.exists(index)) {
+            String text = Files.readString(index, StandardCharsets.UTF_8);
+            // Text after the last newline is a line torn by a crash; its segment was never acknowledged,
+            // and the next append writes over it.
+            text = text.substring(0, text.lastIndexOf('\n') + 1);
+            indexLength = text.getBytes(StandardCharsets.UTF_8).length;
+            for (String line : text.split("\n")) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                indexLines++;
+                String[] fields = line.trim().split(" ");
+                try {
+                    if (fields.length != 4) {
+                        throw new NumberFormatException();
+                    }
+                    segments.add(new Segment(fields[0], Integer.parseInt(fields[1]), Long.parseLong(fields[2]),
+                            Long.parseLong(fields[3])));
+                } catch (NumberFormatException e) {
+                    System.out.println("Skipping invalid archive index line \"" + line + "\"");
+                }
+            }
+        }
+        isLoaded = true;
+    }
+
+    /**
+     * One index entry: a segment file, its task count and the range of ids in it.
+     */
+    private static class Segment {
+        private final String name;
+        private final int count;
+        private final long minId;
+        private final long maxId;
+
+        private Segment(String name, int count, long minId, long maxId) {
+            this.name = name;
+            this.count = count;
+            this.minId = minId;
+            this.maxId = maxId;
+        }
+
+        @Override
+        public String toString() {
+            return name + " " + count + " " + minId + " " + maxId;
+        }
+    }
+}
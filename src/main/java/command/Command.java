@@ -0,0 +1,136 @@
+package command;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Represents one line of user input, split into its command keyword and the arguments after it.
+ */
+public class Command {
+    protected final String input;
+    protected final String keyword;
+    protected final String arguments;
+
+    private Command(String input, String keyword, String arguments) {
+        this.input = input;
+        this.keyword = keyword;
+        this.arguments = arguments;
+    }
+
+    /**
+     * Splits user input into a command in a single scan, without regular expressions.
+     * The keyword is lower-cased; the arguments keep their case with surrounding whitespace removed.
+     *
+     * @param input The user input.
+     * @return The parsed command.
+     */
+    public static Command parse(String input) {
+        int length = input.length();
+        int start = 0;
+        while (start < length && Character.isWhitespace(input.charAt(start))) {
+            start++;
+        }
+        int end = start;
+        while (end < length && !Character.isWhitespace(input.charAt(end))) {
+            end++;
+        }
+        String keyword = input.substring(start, end).toLowerCase(Locale.ROOT);
+        return new Command(input, keyword, input.substring(end).trim());
+    }
+
+    /**
+     * Returns the original input the command was parsed from.
+     *
+     * @return The original input.
+     */
+    public String getInput() {
+        return this.input;
+    }
+
+    public String getKeyword() {
+        return this.keyword;
+    }
+
+    /**
+     * Returns everything after the keyword, trimmed.
+     *
+     * @return The arguments, or an empty string if there are none.
+     */
+    public String getArguments() {
+        return this.arguments;
+    }
+
+    public boolean hasArguments() {
+        return !this.arguments.isEmpty();
+    }
+
+    /**
+     * Returns the arguments split into whitespace-separated words.
+     *
+     * @return The words, possibly none.
+     */
+    public List<String> getWords() {
+        List<String> words = new ArrayList<>();
+        int length = arguments.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && Character.isWhitespace(arguments.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && !Character.isWhitespace(arguments.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                words.add(arguments.substring(start, i));
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Writes a set of zero-based indices as one-based task numbers and ranges, e.g. "1,4,9-20",
+     * the form bulk mark, unmark and delete accept.
+     *
+     * @param selected The indices.
+     * @return The task numbers and ranges.
+     */
+    public static String formatSelection(BitSet selected) {
+        StringBuilder ranges = new StringBuilder();
+        int from = selected.nextSetBit(0);
+        while (from >= 0) {
+            int to = selected.nextClearBit(from);
+            if (ranges.length() > 0) {
+                ranges.append(',');
+            }
+            ranges.append(from + 1);
+            if (to - from > 1) {
+                ranges.append('-').append(to);
+            }
+            from = selected.nextSetBit(to);
+        }
+        return ranges.toString();
+    }
+
+    /**
+     * Splits text on every occurrence of a literal separator, without regular expressions.
+     *
+     * @param text The text to split.
+     * @param separator The separator to split on.
+     * @return The pieces between separators, including empty ones.
+     */
+    public static List<String> split(String text, String separator) {
+        List<String> pieces = new ArrayList<>();
+        int start = 0;
+        int found = text.indexOf(separator);
+        while (found >= 0) {
+            pieces.add(text.substring(start, found));
+            start = found + separator.length();
+            found = text.indexOf(separator, start);
+        }
+        pieces.add(text.substring(start));
+        return pieces;
+    }
+}
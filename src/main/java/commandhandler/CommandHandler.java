@@ -0,0 +1,20 @@
+package commandhandler;
+
+import command.Command;
+import exception.GenesisException;
+
+/**
+ * Executes one kind of command.
+ */
+@FunctionalInterface
+public interface CommandHandler {
+    /**
+     * Executes the command and returns the response to show the user.
+     *
+     * @param command The parsed command.
+     * @param isSilent If true, suppress output messages.
+     * @return The response to the command.
+     * @throws GenesisException If the command is invalid or cannot be carried out.
+     */
+    String handle(Command command, boolean isSilent) throws GenesisException;
+}
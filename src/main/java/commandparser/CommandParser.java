@@ -1,6 +1,9 @@
 package commandparser;
 
+import command.Command;
+import commandregistry.CommandRegistry;
 import exception.GenesisException;
+import query.Query;
 import storage.Storage;
 import taskmanager.TaskManager;
 import task.Task;
@@ -8,13 +11,29 @@ import deadline.Deadline;
 import todo.Todo;
 import event.Event;
 
-
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 /**
  * Parses and executes user commands for task management.
  */
 public class CommandParser {
+    private static final int DEFAULT_UPCOMING = 5;
+    private static final String NO_SELECTION = "No tasks matched, so nothing was changed.";
+    private static final String ARCHIVED_OPTION = "--archived";
+
     protected TaskManager taskManager;
     protected Storage storage;
     /**
@@ -29,157 +48,763 @@ public class CommandParser {
     }
 
     /**
-     * Marks a task as complete based on user input.
+     * Marks a task as complete based on user input, or several tasks at once.
+     *
+     * @param command The command containing the task index to mark, or a selection as described
+     *                in {@link #selectTasks(String)}.
+     */
+    public String handleMark(Command command) throws GenesisException {
+        if (!isSingleIndex(command)) {
+            // A selection such as "done" must not change between being resolved and applied, so
+            // bulk changes take the exclusive lock. A single mark only locks its task.
+            return taskManager.atomically(() -> {
+                BitSet selected = selectTasks(command.getArguments());
+                if (selected.isEmpty()) {
+                    return NO_SELECTION;
+                }
+                int count = taskManager.markTasks(selected);
+                this.storage.record(command.getInput());
+                return "Nice! I've marked " + count + " tasks as done.";
+            });
+        }
+        int index = parseIndex(command);
+        return taskManager.markTask(index, () -> this.storage.record(command.getInput()));
+    }
+
+    /**
+     * Unmarks a task as incomplete based on user input, or several tasks at once.
+     *
+     * @param command The command containing the task index to unmark, or a selection as described
+     *                in {@link #selectTasks(String)}.
+     */
+    public String handleUnmark(Command command) throws GenesisException {
+        if (!isSingleIndex(command)) {
+            return taskManager.atomically(() -> {
+                BitSet selected = selectTasks(command.getArguments());
+                if (selected.isEmpty()) {
+                    return NO_SELECTION;
+                }
+                int count = taskManager.unmarkTasks(selected);
+                this.storage.record(command.getInput());
+                return "Ok. I've marked " + count + " tasks as not done yet.";
+            });
+        }
+        int index = parseIndex(command);
+        return taskManager.unmarkTask(index, () -> this.storage.record(command.getInput()));
+    }
+
+    /**
+     * Deletes a task based on user input, or several tasks at once.
      *
-     * @param input The user input containing the task index to mark.
+     * @param command The command containing the task index to delete, or a selection as described
+     *                in {@link #selectTasks(String)}.
      */
-    public String handleMark(String input) {
+    public String handleDelete(Command command) throws GenesisException {
+        if (!isSingleIndex(command)) {
+            return taskManager.atomically(() -> {
+                BitSet selected = selectTasks(command.getArguments());
+                if (selected.isEmpty()) {
+                    return NO_SELECTION;
+                }
+                int count = taskManager.deleteTasks(selected);
+                this.storage.record(command.getInput());
+                return "Noted. I have removed " + count + " tasks.\nNow you have "
+                        + taskManager.size() + " tasks in the list.";
+            });
+        }
+        int index = parseIndex(command);
+        return taskManager.deleteTask(index, () -> this.storage.record(command.getInput()));
+    }
+
+    /**
+     * Undoes the most recent change to the list. The undo is saved as the plain commands that
+     * reverse the change, so the journal never needs the undo history.
+     */
+    public String handleUndo() throws GenesisException {
+        return taskManager.atomically(() -> {
+            List<String> records = new ArrayList<>();
+            String description = taskManager.undo(records);
+            recordAll(records);
+            return "Undone: " + description + ".\nNow you have " + taskManager.size()
+                    + " tasks in the list.";
+        });
+    }
+
+    /**
+     * Makes the most recently undone change again.
+     */
+    public String handleRedo() throws GenesisException {
+        return taskManager.atomically(() -> {
+            List<String> records = new ArrayList<>();
+            String description = taskManager.redo(records);
+            recordAll(records);
+            return "Redone: " + description + ".\nNow you have " + taskManager.size()
+                    + " tasks in the list.";
+        });
+    }
+
+    /**
+     * Records several commands as one batch, so compaction never splits them.
+     * Callers hold the TaskManager lock.
+     */
+    private void recordAll(List<String> records) {
+        storage.beginBatch();
+        for (String record : records) {
+            storage.record(record);
+        }
+        storage.commitBatch();
+    }
+
+    /**
+     * Puts a task back at a position in the list with its old id, the way the journal replays
+     * undoing a delete. Only storage runs this while replaying; it is not a command users can type.
+     *
+     * @param command The command, "restore POSITION ID X|- TASK", where X marks a completed task
+     *                and TASK is a todo, deadline or event command.
+     */
+    public String handleRestore(Command command) throws GenesisException {
+        String[] parts = command.getArguments().split(" ", 4);
+        if (parts.length < 4 || !(parts[2].equals("X") || parts[2].equals("-"))) {
+            throw new GenesisException("Please use restore POSITION ID X|- TASK");
+        }
+        int index;
+        long id;
         try {
-            int index = Integer.parseInt(input.substring(5)) - 1;
-            String temp = taskManager.markTask(index);
-            this.storage.writeTasks();
-            return temp;
+            index = Integer.parseInt(parts[0]) - 1;
+            id = Long.parseLong(parts[1]);
         } catch (NumberFormatException e) {
-            return "Invalid task number!";
+            throw new GenesisException("Please use restore POSITION ID X|- TASK");
+        }
+        if (index < 0 || id <= 0) {
+            throw new GenesisException("Invalid task number!");
         }
+        Task task = parseTask(parts[3]);
+        task.setId(id);
+        if (parts[2].equals("X")) {
+            task.mark();
+        }
+        return taskManager.atomically(() -> {
+            BitSet position = new BitSet();
+            position.set(index);
+            taskManager.insertTasks(position, List.of(task));
+            this.storage.record(command.getInput());
+            return "Restored this task:\n" + task.toString();
+        });
     }
 
     /**
-     * Unmarks a task as incomplete based on user input.
+     * Waits for every change so far to reach the disk, then says goodbye.
+     */
+    public String handleExit() {
+        this.storage.flush();
+        return "Bye. Hope to see you again soon!";
+    }
+
+    private static boolean isSingleIndex(Command command) {
+        String arguments = command.getArguments();
+        for (int i = 0; i < arguments.length(); i++) {
+            if (!Character.isDigit(arguments.charAt(i))) {
+                return false;
+            }
+        }
+        return !arguments.isEmpty();
+    }
+
+    /**
+     * Resolves a selection of tasks to their positions in the list. A selection is one of
+     * <ul>
+     *     <li>task numbers and ranges, e.g. "1,4,9-20";</li>
+     *     <li>"done", every completed task;</li>
+     *     <li>"find QUERY", every task the same query would find.</li>
+     * </ul>
      *
-     * @param input The user input containing the task index to unmark.
+     * @param selection The selection text.
+     * @return The zero-based indices of the selected tasks.
+     * @throws GenesisException If the selection cannot be understood.
      */
-    public String handleUnmark(String input) {
+    private BitSet selectTasks(String selection) throws GenesisException {
+        List<Task> current = taskManager.getTasks();
+        BitSet selected = new BitSet(current.size());
+        Command words = Command.parse(selection);
+        if (words.getKeyword().equals("done") && !words.hasArguments()) {
+            for (int i = 0; i < current.size(); i++) {
+                if (current.get(i).isComplete()) {
+                    selected.set(i);
+                }
+            }
+            return selected;
+        }
+        if (words.getKeyword().equals("find")) {
+            // Matched by id, since a paged task list may hand out a new object for the same task.
+            Set<Long> matches = new HashSet<>();
+            for (Task task : findMatches(words.getArguments())) {
+                matches.add(task.getId());
+            }
+            for (int i = 0; i < current.size(); i++) {
+                if (matches.contains(current.get(i).getId())) {
+                    selected.set(i);
+                }
+            }
+            return selected;
+        }
+
         try {
-            int index = Integer.parseInt(input.substring(7)) - 1;
-            String temp = taskManager.unmarkTask(index);
-            this.storage.writeTasks();
-            return temp;
+            for (String piece : Command.split(selection, ",")) {
+                String range = piece.trim();
+                int dash = range.indexOf('-', 1);
+                int from = Integer.parseInt((dash < 0 ? range : range.substring(0, dash)).trim());
+                int to = dash < 0 ? from : Integer.parseInt(range.substring(dash + 1).trim());
+                if (from < 1 || to < from || to > current.size()) {
+                    throw new GenesisException("Invalid task number!");
+                }
+                selected.set(from - 1, to);
+            }
+        } catch (NumberFormatException e) {
+            throw new GenesisException("Please use a task number, numbers and ranges like 1,4,9-20, "
+                    + "done, or find TEXT");
+        }
+        return selected;
+    }
+
+    private static int parseIndex(Command command) throws GenesisException {
+        try {
+            return Integer.parseInt(command.getArguments()) - 1;
         } catch (NumberFormatException e) {
-            return "Invalid task number!";
+            throw new GenesisException("Invalid task number!");
         }
     }
 
     /**
-     * Deletes a task based on user input.
+     * Lists the tasks, optionally only one page of them.
      *
-     * @param input The user input containing the task index to delete.
+     * @param command The command, either "list" or "list OFFSET LIMIT".
      */
-    public String handleDelete(String input) {
+    public String handleList(Command command) throws GenesisException {
+        List<String> words = command.getWords();
+        if (words.isEmpty()) {
+            return taskManager.listTasks();
+        }
         try {
-            int index = Integer.parseInt(input.substring(7)) - 1;
-            String temp = taskManager.deleteTask(index);
-            this.storage.writeTasks();
-            return temp;
+            int offset = Integer.parseInt(words.get(0));
+            int limit = words.size() > 1 ? Integer.parseInt(words.get(1)) : Integer.MAX_VALUE;
+            if (offset < 0 || limit <= 0) {
+                throw new GenesisException("The offset cannot be negative and the limit must be positive!");
+            }
+            return taskManager.listTasks(offset, limit);
         } catch (NumberFormatException e) {
-            return "Invalid task number!";
+            throw new GenesisException("Please use list OFFSET LIMIT, e.g. list 0 20");
         }
     }
 
-    public String handleFind(String input) {
-        String search = input.replaceFirst("find ", "").trim();
-        StringBuilder response = new StringBuilder("Here are the matching tasks in your list:\n");
+    /**
+     * Finds tasks whose description contains the search text, using the task manager's search index.
+     *
+     * Terms can be combined with AND and OR, where AND binds tighter, e.g. "find eat AND lunch OR dinner".
+     * A leading -i makes the search case-insensitive, and a leading --archived searches the archive
+     * instead of the list.
+     *
+     * @param command The command containing the search query.
+     */
+    public String handleFind(Command command) throws GenesisException {
+        String query = command.getArguments();
+        if (query.equals(ARCHIVED_OPTION) || query.startsWith(ARCHIVED_OPTION + " ")) {
+            return findArchived(query.substring(ARCHIVED_OPTION.length()).trim());
+        }
+        Set<Task> matches = findMatches(query);
+        if (matches.isEmpty()) {
+            return "No matching tasks found.";
+        }
 
+        // Ids grow in the order tasks were added, so sorting by id restores list order.
+        List<Task> sorted = new ArrayList<>(matches);
+        sorted.sort(Comparator.comparingLong(Task::getId));
+        StringBuilder response = new StringBuilder("Here are the matching tasks in your list:\n");
         int counter = 1;
-        for (Task task : taskManager.getTasks()) {
-            if (task.toString().contains(search)) {
+        for (Task task : sorted) {
+            response.append(counter).append(". ").append(task.toString()).append("\n");
+            counter++;
+        }
+        return response.toString();
+    }
+
+    private Set<Task> findMatches(String query) {
+        boolean isCaseInsensitive = false;
+        if (query.startsWith("-i ")) {
+            isCaseInsensitive = true;
+            query = query.substring(3).trim();
+        }
+
+        Set<Task> matches = new HashSet<>();
+        for (String alternative : Command.split(query, " OR ")) {
+            Set<Task> allTerms = null;
+            for (String term : Command.split(alternative, " AND ")) {
+                if (term.isBlank()) {
+                    continue;
+                }
+                Set<Task> termMatches = taskManager.search(term.trim(), isCaseInsensitive);
+                if (allTerms == null) {
+                    allTerms = termMatches;
+                } else {
+                    allTerms.retainAll(termMatches);
+                }
+            }
+            if (allTerms != null) {
+                matches.addAll(allTerms);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Runs a structured query over the list, as described in {@link Query}. With the explain option,
+     * also reports which index the query used and how many tasks it examined.
+     *
+     * @param command The command, "query FILTERS".
+     */
+    public String handleQuery(Command command) throws GenesisException {
+        Query query = Query.parse(command);
+        Query.Result result = query.run(taskManager);
+        StringBuilder response = new StringBuilder();
+        if (result.getTasks().isEmpty()) {
+            response.append("No matching tasks found.\n");
+        } else {
+            response.append("Here are the matching tasks in your list:\n");
+            int counter = 1;
+            for (Task task : result.getTasks()) {
                 response.append(counter).append(". ").append(task.toString()).append("\n");
                 counter++;
             }
         }
+        if (query.isExplain()) {
+            response.append(result.getPlan()).append("\n");
+        }
+        return response.toString();
+    }
 
-        if (counter == 1) {
-            return "No matching tasks found.";
+    /**
+     * Finds archived tasks matching a query, streaming through the archive one segment at a time.
+     * The query works as for {@link #handleFind(Command)}.
+     */
+    private String findArchived(String query) throws GenesisException {
+        boolean isCaseInsensitive = query.startsWith("-i ");
+        String terms = isCaseInsensitive ? query.substring(3).trim() : query;
+        StringBuilder response = new StringBuilder("Here are the matching archived tasks:\n");
+        int[] counter = {0};
+        try {
+            storage.getArchive().scan(task -> {
+                if (matchesQuery(task.getDescription(), terms, isCaseInsensitive)) {
+                    counter[0]++;
+                    response.append(counter[0]).append(". ").append(task.toString()).append("\n");
+                }
+            });
+        } catch (IOException e) {
+            throw new GenesisException("Error reading the archive: " + e.getMessage());
         }
+        return counter[0] == 0 ? "No matching archived tasks found." : response.toString();
+    }
 
-        return response.toString();
+    private static boolean matchesQuery(String description, String query, boolean isCaseInsensitive) {
+        String text = isCaseInsensitive ? description.toLowerCase(Locale.ROOT) : description;
+        for (String alternative : Command.split(query, " OR ")) {
+            boolean hasTerms = false;
+            boolean isMatch = true;
+            for (String term : Command.split(alternative, " AND ")) {
+                if (term.isBlank()) {
+                    continue;
+                }
+                hasTerms = true;
+                String needle = isCaseInsensitive ? term.trim().toLowerCase(Locale.ROOT) : term.trim();
+                if (!text.contains(needle)) {
+                    isMatch = false;
+                    break;
+                }
+            }
+            if (hasTerms && isMatch) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
-     * Adds a deadline task based on user input.
+     * Moves completed tasks out of the list into the archive, where {@code find --archived} can still
+     * find them. The archive is written before the tasks are removed, so a failure loses nothing.
      *
-     * @param input The user input containing the task description and deadline.
-     * @param isSilent If true, suppress output messages.
+     * @param command Either "archive", for every completed task, or "archive DAYS", for completed
+     *                deadlines and events whose date ended more than DAYS days ago.
      */
-    public String handleDeadline(String input, boolean isSilent) {
-        if (!input.contains("/by ")) {
-            return "You need a deadline to add this task!";
+    public String handleArchive(Command command) throws GenesisException {
+        long cutoff;
+        if (!command.hasArguments()) {
+            cutoff = Long.MAX_VALUE;
+        } else {
+            try {
+                int days = Integer.parseInt(command.getArguments());
+                if (days < 0) {
+                    throw new NumberFormatException();
+                }
+                cutoff = LocalDate.now().toEpochDay() - days;
+            } catch (NumberFormatException e) {
+                throw new GenesisException("Please use archive, or archive DAYS to only archive tasks "
+                        + "that ended more than DAYS days ago");
+            }
+        }
+        String summary = taskManager.atomically(() -> {
+            List<Task> current = taskManager.getTasks();
+            BitSet selected = new BitSet(current.size());
+            List<Task> archived = new ArrayList<>();
+            for (int i = 0; i < current.size(); i++) {
+                Task task = current.get(i);
+                if (task.isComplete() && (cutoff == Long.MAX_VALUE || endsBefore(task, cutoff))) {
+                    selected.set(i);
+                    archived.add(task);
+                }
+            }
+            if (archived.isEmpty()) {
+                return null;
+            }
+            try {
+                storage.getArchive().append(archived);
+            } catch (IOException e) {
+                throw new GenesisException("Error archiving tasks: " + e.getMessage());
+            }
+            taskManager.deleteTasks(selected);
+            // Undoing would bring the tasks back while they stay in the archive.
+            taskManager.clearHistory();
+            // Replayed as a plain delete, so the journal never writes to the archive again.
+            this.storage.record("delete " + Command.formatSelection(selected));
+            return "Archived " + archived.size() + " completed tasks.\nNow you have "
+                    + taskManager.size() + " tasks in the list.";
+        });
+        return summary == null ? "No completed tasks to archive." : summary;
+    }
 
+    private static boolean endsBefore(Task task, long day) {
+        if (task instanceof Deadline) {
+            return ((Deadline) task).getDueDay() < day;
         }
-        String[] parts = input.split("/by ");
-        String taskName = parts[0].replaceFirst("deadline ", "").trim();
-        if (taskName.isEmpty()) {
-            return "You need a task description!";
+        if (task instanceof Event) {
+            return ((Event) task).getEndDay() < day;
+        }
+        return false;
+    }
 
+    /**
+     * Lists the events taking place on a given date.
+     *
+     * @param command The command, "on DATE".
+     */
+    public String handleOn(Command command) throws GenesisException {
+        LocalDate date = parseDate(command.getArguments());
+        return formatEvents(taskManager.findEvents(date, date), "on " + date);
+    }
+
+    /**
+     * Lists the events overlapping a date range.
+     *
+     * @param command The command, "between DATE DATE".
+     */
+    public String handleBetween(Command command) throws GenesisException {
+        List<String> dates = command.getWords();
+        if (dates.size() != 2) {
+            throw new GenesisException("You need a starting and ending date, e.g. between 2024-09-01 2024-09-07");
+        }
+        LocalDate from = parseDate(dates.get(0));
+        LocalDate to = parseDate(dates.get(1));
+        if (to.isBefore(from)) {
+            throw new GenesisException("The ending date cannot be before the starting date!");
         }
-        String initial = parts[1].trim();
-        LocalDate deadline = LocalDate.parse(initial);
-        Deadline deadlineTask = new Deadline(taskName, deadline, input);
-        String temp;
+        return formatEvents(taskManager.findEvents(from, to),
+                "between " + from + " and " + to);
+    }
+
+    /**
+     * Lists the incomplete deadlines due next, earliest first. Overdue deadlines are included.
+     *
+     * @param command The command, "upcoming", "upcoming N" for the next N deadlines or
+     *                "upcoming N days" for everything due within N days.
+     */
+    public String handleUpcoming(Command command) throws GenesisException {
+        List<String> words = command.getWords();
+        List<Deadline> deadlines;
         try {
-            temp = taskManager.addTask(deadlineTask, isSilent);
-            this.storage.writeTasks();
-            return temp;
-        } catch (GenesisException e) {
-            return e.getMessage();
+            int count = words.isEmpty() ? DEFAULT_UPCOMING : Integer.parseInt(words.get(0));
+            if (count <= 0) {
+                throw new GenesisException("Please enter a positive number!");
+            }
+            if (words.size() == 2 && words.get(1).equalsIgnoreCase("days")) {
+                deadlines = taskManager.deadlinesDueBy(LocalDate.now().plusDays(count));
+            } else if (words.size() > 1) {
+                throw new GenesisException("Please use upcoming N or upcoming N days");
+            } else {
+                deadlines = taskManager.nextDeadlines(count);
+            }
+        } catch (NumberFormatException e) {
+            throw new GenesisException("Please use upcoming N or upcoming N days");
         }
+
+        if (deadlines.isEmpty()) {
+            return "No upcoming deadlines.";
+        }
+        StringBuilder response = new StringBuilder("Here are your upcoming deadlines:\n");
+        int counter = 1;
+        for (Deadline deadline : deadlines) {
+            response.append(counter).append(". ").append(deadline.toString()).append("\n");
+            counter++;
+        }
+        return response.toString();
     }
 
     /**
-     * Adds a todo task based on user input.
+     * Runs the commands in a file, or the lines after the keyword, as one batch. Batch files are only
+     * read from the data directory, since a server session may be driven by a remote client.
      *
-     * @param input The user input containing the task description.
-     * @param isSilent If true, suppress output messages.
+     * @param command The command, "batch FILE" or "batch" followed by one command per line.
+     * @param registry The registry used to dispatch each command.
      */
-    public String handleTodo(String input, boolean isSilent) {
-        String taskName = input.replaceFirst("todo ", "").trim();
-        if (taskName.isEmpty()) {
-            return "You need a task description!";
+    public String handleBatch(Command command, CommandRegistry registry) throws GenesisException {
+        String arguments = command.getArguments();
+        if (arguments.isEmpty()) {
+            throw new GenesisException("You need a batch file, or one command per line after batch!");
+        }
+        List<String> lines;
+        if (arguments.indexOf('\n') >= 0) {
+            lines = Command.split(arguments, "\n");
+        } else {
+            try {
+                lines = Files.readAllLines(resolveBatchFile(arguments), StandardCharsets.UTF_8);
+            } catch (IOException | InvalidPathException e) {
+                throw new GenesisException("Could not read the batch file " + arguments
+                        + "! Batch files must be in the data directory.");
+            }
+        }
+
+        List<String> results = runBatch(lines, registry);
+        StringBuilder response = new StringBuilder("Done! I ran " + results.size() + " commands as one batch:\n");
+        int counter = 1;
+        for (String result : results) {
+            response.append(counter).append(". ").append(result == null ? "" : result).append("\n");
+            counter++;
+        }
+        return response.toString();
+    }
+
+    /**
+     * Resolves a batch file name against the data directory, following links, and rejects any file
+     * that ends up outside it.
+     */
+    private Path resolveBatchFile(String name) throws IOException {
+        Path directory = storage.getDataDirectory().toRealPath();
+        Path file = directory.resolve(name).toRealPath();
+        if (!file.startsWith(directory)) {
+            throw new IOException("outside the data directory");
+        }
+        return file;
+    }
+
+    /**
+     * Applies a sequence of commands as one unit. Consecutive todo, deadline and event commands are
+     * checked for duplicates and added in a single pass. If any command fails, every change made by
+     * the batch is rolled back and nothing is written; otherwise all the changes are persisted
+     * together and flushed once.
+     *
+     * @param lines The commands, one per line. Blank lines are skipped.
+     * @param registry The registry used to dispatch commands other than adds.
+     * @return The response to each command, in order.
+     * @throws GenesisException If a command fails, naming the line it is on.
+     */
+    public List<String> runBatch(List<String> lines, CommandRegistry registry) throws GenesisException {
+        List<String> results = taskManager.transactionally(() -> {
+            storage.beginBatch();
+            boolean isApplied = false;
+            try {
+                List<String> temp = applyBatch(lines, registry);
+                storage.commitBatch();
+                isApplied = true;
+                return temp;
+            } finally {
+                if (!isApplied) {
+                    storage.abortBatch();
+                }
+            }
+        });
+        storage.flush();
+        return results;
+    }
+
+    private List<String> applyBatch(List<String> lines, CommandRegistry registry) throws GenesisException {
+        List<String> results = new ArrayList<>(lines.size());
+        int i = 0;
+        while (i < lines.size()) {
+            Command command = Command.parse(lines.get(i));
+            String keyword = command.getKeyword();
+            if (keyword.isEmpty()) {
+                i++;
+                continue;
+            }
+            if (isAdd(keyword)) {
+                i = applyAdds(lines, i, results);
+                continue;
+            }
+            if (keyword.equals("bye") || keyword.equals("batch") || keyword.equals("archive")
+                    || keyword.equals("undo") || keyword.equals("redo")) {
+                throw batchFailure(i, keyword + " cannot be used inside a batch!");
+            }
+            try {
+                results.add(registry.dispatch(command, false));
+            } catch (GenesisException e) {
+                throw batchFailure(i, e.getMessage());
+            }
+            i++;
+        }
+        return results;
+    }
+
+    /**
+     * Adds the run of task commands starting at the given line in one duplicate-checking pass.
+     *
+     * @return The index of the first line after the run.
+     */
+    private int applyAdds(List<String> lines, int start, List<String> results) throws GenesisException {
+        List<Command> commands = new ArrayList<>();
+        List<Task> run = new ArrayList<>();
+        int i = start;
+        while (i < lines.size()) {
+            Command command = Command.parse(lines.get(i));
+            if (!isAdd(command.getKeyword())) {
+                break;
+            }
+            try {
+                run.add(parseTask(command));
+            } catch (GenesisException e) {
+                throw batchFailure(i, e.getMessage());
+            }
+            commands.add(command);
+            i++;
         }
-        Todo todoTask = new Todo(taskName, input);
-        String temp;
         try {
-            temp = taskManager.addTask(todoTask, isSilent);
-            this.storage.writeTasks();
-            return temp;
+            taskManager.addAll(run);
         } catch (GenesisException e) {
-            return e.getMessage();
+            throw new GenesisException(e.getMessage() + "\nNothing in the batch was changed.");
+        }
+        for (int j = 0; j < run.size(); j++) {
+            storage.record(commands.get(j).getInput());
+            results.add("Got it. I've added this task:\n" + run.get(j).toString());
         }
+        return i;
+    }
+
+    private static boolean isAdd(String keyword) {
+        return keyword.equals("todo") || keyword.equals("deadline") || keyword.equals("event");
+    }
+
+    private static GenesisException batchFailure(int line, String message) {
+        return new GenesisException("Line " + (line + 1) + " of the batch: " + message
+                + "\nNothing in the batch was changed.");
+    }
+
+    private String formatEvents(List<Event> events, String range) {
+        if (events.isEmpty()) {
+            return "No events " + range + ".";
+        }
+        StringBuilder response = new StringBuilder("Here are the events " + range + ":\n");
+        int counter = 1;
+        for (Event event : events) {
+            response.append(counter).append(". ").append(event.toString()).append("\n");
+            counter++;
+        }
+        return response.toString();
     }
 
     /**
-     * Adds an event task based on user input.
+     * Parses a todo, deadline or event command into a task without adding it anywhere.
      *
-     * @param input The user input containing the task description, start, and end time.
-     * @param isSilent If true, suppress output messages.
+     * @param input The command text describing the task.
+     * @return The parsed task.
+     * @throws GenesisException If the command is not a valid task command.
+     */
+    public static Task parseTask(String input) throws GenesisException {
+        return parseTask(Command.parse(input));
+    }
+
+    /**
+     * Parses a todo, deadline or event command into a task without adding it anywhere.
+     *
+     * @param command The command describing the task.
+     * @return The parsed task.
+     * @throws GenesisException If the command is not a valid task command.
      */
-    public String handleEvent(String input, boolean isSilent) {
-        boolean withoutFrom = !input.contains("/from ");
-        boolean withoutTo = !input.contains("/to ");
-        boolean isNotEvent = withoutFrom || withoutTo;
-        if (isNotEvent) {
-            return "You need a starting and ending date to add this task!";
+    public static Task parseTask(Command command) throws GenesisException {
+        switch (command.getKeyword()) {
+        case "todo":
+            return parseTodo(command);
+        case "deadline":
+            return parseDeadline(command);
+        case "event":
+            return parseEvent(command);
+        default:
+            throw new GenesisException("Sorry, I am not sure what task this is! Please enter a valid task.");
+        }
+    }
 
+    private static Todo parseTodo(Command command) throws GenesisException {
+        String taskName = command.getArguments();
+        if (taskName.isEmpty()) {
+            throw new GenesisException("You need a task description!");
         }
-        String[] parts = input.split("/from ");
-        String[] dateParts = parts[1].split("/to ");
-        String taskName = parts[0].replaceFirst("event ", "").trim();
+        return new Todo(taskName);
+    }
+
+    private static Deadline parseDeadline(Command command) throws GenesisException {
+        String arguments = command.getArguments();
+        int by = arguments.indexOf("/by ");
+        if (by < 0) {
+            throw new GenesisException("You need a deadline to add this task!");
+        }
+        String taskName = arguments.substring(0, by).trim();
         if (taskName.isEmpty()) {
-            return "You need a task description!";
+            throw new GenesisException("You need a task description!");
+        }
+        LocalDate deadline = parseDate(arguments.substring(by + 4));
+        return new Deadline(taskName, deadline);
+    }
 
+    private static Event parseEvent(Command command) throws GenesisException {
+        String arguments = command.getArguments();
+        int from = arguments.indexOf("/from ");
+        int to = from < 0 ? -1 : arguments.indexOf("/to ", from);
+        if (from < 0 || to < 0) {
+            throw new GenesisException("You need a starting and ending date to add this task!");
         }
-        String initialStartDate = dateParts[0].trim();
-        String initialEndDate = dateParts[1].trim();
-        LocalDate startDate = LocalDate.parse(initialStartDate);
-        LocalDate endDate = LocalDate.parse(initialEndDate);
-        Event eventTask = new Event(taskName, startDate, endDate, input);
-        String temp;
+        String taskName = arguments.substring(0, from).trim();
+        if (taskName.isEmpty()) {
+            throw new GenesisException("You need a task description!");
+        }
+        LocalDate startDate = parseDate(arguments.substring(from + 6, to));
+        LocalDate endDate = parseDate(arguments.substring(to + 4));
+        return new Event(taskName, startDate, endDate);
+    }
+
+    private static LocalDate parseDate(String date) throws GenesisException {
         try {
-            temp = taskManager.addTask(eventTask, isSilent);
-            this.storage.writeTasks();
-            return temp;
-        } catch (GenesisException e) {
-            return e.getMessage();
+            return LocalDate.parse(date.trim());
+        } catch (DateTimeParseException e) {
+            throw new GenesisException("Please enter dates in the yyyy-mm-dd format!");
         }
     }
+
+    /**
+     * Adds a todo, deadline or event task based on user input.
+     *
+     * @param command The command describing the task.
+     * @param isSilent If true, suppress output messages.
+     */
+    public String handleAdd(Command command, boolean isSilent) throws GenesisException {
+        Task task = parseTask(command);
+        return taskManager.atomically(() -> {
+            String temp = taskManager.addTask(task, isSilent);
+            this.storage.record(command.getInput());
+            return temp;
+        });
+    }
 }
@@ -0,0 +1,57 @@
+package commandregistry;
+
+import command.Command;
+import commandhandler.CommandHandler;
+import exception.GenesisException;
+
+import java.util.HashMap;
+
+/**
+ * Maps command keywords to the handlers that execute them.
+ */
+public class CommandRegistry {
+    protected HashMap<String, CommandHandler> handlers;
+
+    /**
+     * Constructs an empty CommandRegistry.
+     */
+    public CommandRegistry() {
+        this.handlers = new HashMap<>();
+    }
+
+    /**
+     * Registers a handler for a keyword, replacing any handler already registered for it.
+     *
+     * @param keyword The command keyword, matched case-insensitively.
+     * @param handler The handler to execute for the keyword.
+     */
+    public void register(String keyword, CommandHandler handler) {
+        handlers.put(Command.parse(keyword).getKeyword(), handler);
+    }
+
+    /**
+     * Returns whether a handler is registered for the keyword.
+     *
+     * @param keyword The command keyword.
+     * @return True if the keyword has a handler.
+     */
+    public boolean isRegistered(String keyword) {
+        return handlers.containsKey(Command.parse(keyword).getKeyword());
+    }
+
+    /**
+     * Executes a command with the handler registered for its keyword.
+     *
+     * @param command The command to execute.
+     * @param isSilent If true, suppress output messages.
+     * @return The response to the command.
+     * @throws GenesisException If no handler is registered for the keyword, or the handler fails.
+     */
+    public String dispatch(Command command, boolean isSilent) throws GenesisException {
+        CommandHandler handler = handlers.get(command.getKeyword());
+        if (handler == null) {
+            throw new GenesisException("Sorry, I am not sure what task this is! Please enter a valid task.");
+        }
+        return handler.handle(command, isSilent);
+    }
+}
@@ -3,23 +3,40 @@ package deadline;
 import task.Task;
 
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
 
 /**
  * Represents a Deadline task with a specific due date.
  */
 public class Deadline extends Task {
-    protected LocalDate deadline;
+    // Kept as an epoch day rather than a LocalDate object, to keep large task lists small.
+    protected long dueDay;
     /**
-     * Constructs a Deadline task with the specified description, deadline, and input.
+     * Constructs a Deadline task with the specified description and deadline.
      *
      * @param description The description of the deadline task.
      * @param deadline The due date of the deadline task.
-     * @param input The input used to create the deadline task.
      */
-    public Deadline (String description, LocalDate deadline, String input) {
-        super(description, input);
-        this.deadline = deadline;
+    public Deadline (String description, LocalDate deadline) {
+        super(description);
+        this.dueDay = deadline.toEpochDay();
+    }
+
+    public LocalDate getDeadline() {
+        return LocalDate.ofEpochDay(this.dueDay);
+    }
+
+    /**
+     * Returns the due date as a day count since 1970-01-01, without creating a LocalDate.
+     *
+     * @return The due date as an epoch day.
+     */
+    public long getDueDay() {
+        return this.dueDay;
+    }
+
+    @Override
+    public String getInput() {
+        return "deadline " + this.description + " /by " + getDeadline();
     }
 
     /**
@@ -28,7 +45,7 @@ public class Deadline extends Task {
      * @return The string representation of the deadline task.
      */
     @Override
-    public String toString() {
-        return "[D]" + super.toString() + " (by: " + this.deadline.format(DateTimeFormatter.ofPattern("MMM d yyyy")) + ")";
+    protected String render(boolean isComplete) {
+        return "[D]" + super.render(isComplete) + " (by: " + getDeadline().format(DATE_FORMAT) + ")";
     }
 }
@@ -0,0 +1,82 @@
+package deadlineindex;
+
+import deadline.Deadline;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Keeps the deadlines that are not yet complete sorted by due date, so the next ones due
+ * can be read off the front without sorting the whole task list. Safe to use from many threads.
+ */
+public class DeadlineIndex {
+    private final TreeSet<Deadline> pending = new TreeSet<>(
+            Comparator.comparingLong(Deadline::getDueDay).thenComparingLong(Deadline::getId));
+
+    /**
+     * Adds a deadline to the index. Adding one that is already indexed has no effect.
+     *
+     * @param deadline The deadline to add.
+     */
+    public synchronized void add(Deadline deadline) {
+        pending.add(deadline);
+    }
+
+    /**
+     * Removes a deadline from the index, e.g. when it is completed or deleted.
+     *
+     * @param deadline The deadline to remove.
+     */
+    public synchronized void remove(Deadline deadline) {
+        pending.remove(deadline);
+    }
+
+    /**
+     * Removes every deadline from the index.
+     */
+    public synchronized void clear() {
+        pending.clear();
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * Returns the pending deadlines that are due first, including overdue ones.
+     *
+     * @param count The maximum number of deadlines to return.
+     * @return The deadlines, earliest first.
+     */
+    public synchronized List<Deadline> next(int count) {
+        List<Deadline> result = new ArrayList<>(Math.min(count, pending.size()));
+        for (Deadline deadline : pending) {
+            if (result.size() >= count) {
+                break;
+            }
+            result.add(deadline);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the pending deadlines due on or before the given date, including overdue ones.
+     *
+     * @param date The last due date to include.
+     * @return The deadlines, earliest first.
+     */
+    public synchronized List<Deadline> dueBy(LocalDate date) {
+        List<Deadline> result = new ArrayList<>();
+        long lastDay = date.toEpochDay();
+        for (Deadline deadline : pending) {
+            if (deadline.getDueDay() > lastDay) {
+                break;
+            }
+            result.add(deadline);
+        }
+        return result;
+    }
+}
@@ -25,6 +25,8 @@ public class DialogBox extends HBox {
     @FXML
     private ImageView displayPicture;
 
+    private boolean isFlipped;
+
     private DialogBox(String text, Image img) {
         try {
             FXMLLoader fxmlLoader = new FXMLLoader(GenesisMainWindow.class.getResource("/view/DialogBox.fxml"));
@@ -40,13 +42,29 @@ public class DialogBox extends HBox {
     }
 
     /**
-     * Flips the dialog box such that the ImageView is on the left and text on the right.
+     * Flips the dialog box such that the ImageView is on the left and text on the right, or back again.
      */
     private void flip() {
         ObservableList<Node> tmp = FXCollections.observableArrayList(this.getChildren());
         Collections.reverse(tmp);
         getChildren().setAll(tmp);
-        setAlignment(Pos.TOP_LEFT);
+        isFlipped = !isFlipped;
+        setAlignment(isFlipped ? Pos.TOP_LEFT : Pos.TOP_RIGHT);
+    }
+
+    /**
+     * Reuses the dialog box for another message, so a list cell can keep a single box.
+     *
+     * @param text The text to show.
+     * @param img The speaker's picture.
+     * @param isGenesis If true, the box is laid out as Genesis' reply, otherwise as the user's input.
+     */
+    public void show(String text, Image img, boolean isGenesis) {
+        dialog.setText(text);
+        displayPicture.setImage(img);
+        if (isGenesis != isFlipped) {
+            flip();
+        }
     }
 
     public static DialogBox getUserDialog(String text, Image img) {
@@ -3,35 +3,56 @@ package event;
 import task.Task;
 
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
 
 /**
  * Represents an Event task with a specific start and end time.
  */
 public class Event extends Task {
-    protected LocalDate startTime;
-    protected LocalDate endTime;
+    // Kept as epoch days rather than LocalDate objects, to keep large task lists small.
+    protected long startDay;
+    protected long endDay;
     /**
-     * Constructs an Event task with the specified description, start time, end time, and input.
+     * Constructs an Event task with the specified description, start time and end time.
      *
      * @param description The description of the event task.
      * @param startTime The start time of the event.
      * @param endTime The end time of the event.
-     * @param input The input used to create the event task.
      */
-    public Event (String description, LocalDate startTime, LocalDate endTime, String input) {
-        super(description, input);
-        this.startTime = startTime;
-        this.endTime = endTime;
+    public Event (String description, LocalDate startTime, LocalDate endTime) {
+        super(description);
+        this.startDay = startTime.toEpochDay();
+        this.endDay = endTime.toEpochDay();
     }
+
+    public LocalDate getStartTime() {
+        return LocalDate.ofEpochDay(this.startDay);
+    }
+
+    public LocalDate getEndTime() {
+        return LocalDate.ofEpochDay(this.endDay);
+    }
+
+    public long getStartDay() {
+        return this.startDay;
+    }
+
+    public long getEndDay() {
+        return this.endDay;
+    }
+
+    @Override
+    public String getInput() {
+        return "event " + this.description + " /from " + getStartTime() + " /to " + getEndTime();
+    }
+
     /**
      * Returns a string representation of the event task.
      *
      * @return The string representation of the event task.
      */
     @Override
-    public String toString() {
-        return "[E]" + super.toString() + " (from: " + this.startTime.format(DateTimeFormatter.ofPattern("MMM d yyyy"))
-                + " to: " + this.endTime.format(DateTimeFormatter.ofPattern("MMM d yyyy")) + ")";
+    protected String render(boolean isComplete) {
+        return "[E]" + super.render(isComplete) + " (from: " + getStartTime().format(DATE_FORMAT)
+                + " to: " + getEndTime().format(DATE_FORMAT) + ")";
     }
 }
@@ -0,0 +1,175 @@
+package eventindex;
+
+import event.Event;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * An interval tree over event dates, used to find the events overlapping a date range.
+ *
+ * The tree is a treap ordered by start date (ties broken by task id), where every node also
+ * remembers the latest end date in its subtree. Subtrees that end before the query range are
+ * skipped entirely, so a query costs O(log n + k) for k matching events.
+ */
+public class EventIndex {
+    private final Random random = new Random();
+    private Node root;
+    private int size;
+
+    /**
+     * Adds an event to the index.
+     *
+     * @param event The event to add.
+     */
+    public void add(Event event) {
+        root = insert(root, new Node(event, random.nextInt()));
+        size++;
+    }
+
+    /**
+     * Removes an event from the index.
+     *
+     * @param event The event to remove.
+     */
+    public void remove(Event event) {
+        root = delete(root, event);
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the events that overlap the given date range, ordered by start date.
+     *
+     * @param from The first day of the range, inclusive.
+     * @param to The last day of the range, inclusive.
+     * @return The overlapping events.
+     */
+    public List<Event> findOverlapping(LocalDate from, LocalDate to) {
+        List<Event> matches = new ArrayList<>();
+        collect(root, from.toEpochDay(), to.toEpochDay(), matches);
+        return matches;
+    }
+
+    private void collect(Node node, long from, long to, List<Event> matches) {
+        if (node == null || node.maxEnd < from) {
+            return;
+        }
+        collect(node.left, from, to, matches);
+        if (node.start > to) {
+            return;
+        }
+        if (node.end >= from) {
+            matches.add(node.event);
+        }
+        collect(node.right, from, to, matches);
+    }
+
+    private static int compare(Node node, long start, long id) {
+        int byStart = Long.compare(start, node.start);
+        return byStart != 0 ? byStart : Long.compare(id, node.event.getId());
+    }
+
+    private Node insert(Node node, Node added) {
+        if (node == null) {
+            return added;
+        }
+        if (compare(node, added.start, added.event.getId()) < 0) {
+            node.left = insert(node.left, added);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, added);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        node.update();
+        return node;
+    }
+
+    private Node delete(Node node, Event event) {
+        if (node == null) {
+            return null;
+        }
+        if (node.event == event) {
+            size--;
+            return merge(node.left, node.right);
+        }
+        if (compare(node, event.getStartDay(), event.getId()) < 0) {
+            node.left = delete(node.left, event);
+        } else {
+            node.right = delete(node.right, event);
+        }
+        node.update();
+        return node;
+    }
+
+    private Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            left.update();
+            return left;
+        }
+        right.left = merge(left, right.left);
+        right.update();
+        return right;
+    }
+
+    private Node rotateRight(Node node) {
+        Node pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        node.update();
+        pivot.update();
+        return pivot;
+    }
+
+    private Node rotateLeft(Node node) {
+        Node pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        node.update();
+        pivot.update();
+        return pivot;
+    }
+
+    private static class Node {
+        private final Event event;
+        private final long start;
+        private final long end;
+        private final int priority;
+        private long maxEnd;
+        private Node left;
+        private Node right;
+
+        private Node(Event event, int priority) {
+            this.event = event;
+            this.start = event.getStartDay();
+            this.end = event.getEndDay();
+            this.priority = priority;
+            this.maxEnd = end;
+        }
+
+        private void update() {
+            maxEnd = end;
+            if (left != null) {
+                maxEnd = Math.max(maxEnd, left.maxEnd);
+            }
+            if (right != null) {
+                maxEnd = Math.max(maxEnd, right.maxEnd);
+            }
+        }
+    }
+}
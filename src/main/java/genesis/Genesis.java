@@ -1,10 +1,21 @@
 package genesis;
 
 import commandparser.CommandParser;
+import exception.GenesisException;
+import metrics.Metrics;
+import pagedstorage.PagedStorage;
+import pagedstore.PagedTaskStore;
+import pagedtaskmanager.PagedTaskManager;
 import storage.Storage;
+import task.Task;
 import taskmanager.TaskManager;
 import ui.Ui;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
 /**
  * Represents a generic task.
  */
@@ -36,16 +47,64 @@ public class Genesis {
     public Storage storage;
     public CommandParser parser;
     public Ui ui;
+    public Metrics metrics;
 
     public Genesis() {
-        this.taskManager = new TaskManager();
-
-        this.storage = new Storage(taskManager);
+        boolean isPaged = "paged".equals(System.getProperty("genesis.store"));
+        // Paged tasks are read afresh from the page cache each time, so their renderings would never be reused.
+        Task.setRenderingCached(Boolean.parseBoolean(
+                System.getProperty("genesis.cacheRenderings", String.valueOf(!isPaged))));
+        if (isPaged) {
+            openPagedStore(Paths.get("data"));
+        }
+        if (this.taskManager == null) {
+            this.taskManager = new TaskManager();
+            this.storage = new Storage(taskManager);
+        }
         this.parser = new CommandParser(taskManager, storage);
         this.ui = new Ui(taskManager, parser);
+        this.metrics = new Metrics(taskManager, storage);
+        storage.setMetrics(metrics);
+        ui.setMetrics(metrics);
         storage.loadTasks(parser, ui);
+        String archiveAfterDays = System.getProperty("genesis.archiveAfterDays");
+        if (archiveAfterDays != null) {
+            ui.handleInput("archive " + archiveAfterDays, true);
+        }
+        // Replaying the journal is not something to undo.
+        taskManager.clearHistory();
+        // Turned on after loading, so replaying the journal does not count as commands.
+        metrics.setEnabled(Boolean.parseBoolean(System.getProperty("genesis.metrics", "true")));
+        metrics.register();
+        Runtime.getRuntime().addShutdownHook(new Thread(storage::close));
+    }
+
+
+    /**
+     * Keeps the tasks in a page file instead of on the heap, with at most genesis.cachePages pages
+     * (default 256) in memory. Falls back to the in-memory task list if the store cannot be opened.
+     */
+    private void openPagedStore(Path dataDirectory) {
+        try {
+            PagedTaskStore store = PagedTaskStore.open(dataDirectory, Integer.getInteger("genesis.cachePages", 256));
+            this.taskManager = new PagedTaskManager(store);
+            this.storage = new PagedStorage(taskManager, store, dataDirectory, 20);
+        } catch (IOException e) {
+            System.out.println("Error opening the task store, keeping tasks in memory: " + e.getMessage());
+        }
     }
 
+    /**
+     * Applies a sequence of commands as one unit: either all of them take effect and are saved with a
+     * single write, or none of them do.
+     *
+     * @param commands The commands to run, in order.
+     * @return The response to each command, in order.
+     * @throws GenesisException If a command fails, naming the line it is on.
+     */
+    public List<String> runBatch(List<String> commands) throws GenesisException {
+        return ui.runBatch(commands);
+    }
 
     public String initialise() {
         return "Hello! I'm Genesis!\nWhat can I do for you?\n";
@@ -0,0 +1,77 @@
+package latencyhistogram;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations in nanoseconds with one bucket per power of two. Recording is lock-free
+ * and costs a few atomic additions, so it can be done on every command. Percentiles are read
+ * off the bucket boundaries and are therefore accurate to within a factor of two.
+ */
+public class LatencyHistogram {
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records one duration.
+     *
+     * @param nanos The duration in nanoseconds. Negative durations count as zero.
+     */
+    public void record(long nanos) {
+        long duration = Math.max(nanos, 0);
+        buckets.incrementAndGet(BUCKETS - 1 - Long.numberOfLeadingZeros(duration | 1));
+        count.increment();
+        total.add(duration);
+        max.accumulate(duration);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return total.sum();
+    }
+
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    /**
+     * Returns the mean duration.
+     *
+     * @return The mean in nanoseconds, or 0 if nothing was recorded.
+     */
+    public double getMeanNanos() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) total.sum() / n;
+    }
+
+    /**
+     * Returns an upper bound for the given percentile of the recorded durations.
+     *
+     * @param percentile The percentile, between 0 and 100.
+     * @return The upper edge of the bucket holding the percentile, in nanoseconds, or 0 if nothing
+     *         was recorded.
+     */
+    public long getPercentileNanos(double percentile) {
+        long n = count.sum();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(n * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << (i + 1)) - 1, max.get());
+            }
+        }
+        return max.get();
+    }
+}
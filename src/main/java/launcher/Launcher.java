@@ -2,12 +2,22 @@ package launcher;
 
 import javafx.application.Application;
 import main.Main;
+import server.GenesisServer;
+
+import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * A launcher class to workaround classpath issues.
+ *
+ * Run with "--server [PORT | unix:PATH]" to serve Genesis to local clients instead of opening the GUI.
  */
 public class Launcher {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--server")) {
+            GenesisServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         Application.launch(Main.class, args);
     }
 }
@@ -2,37 +2,59 @@ package mainwindow;
 
 import dialogbox.DialogBox;
 import genesis.Genesis;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
-import javafx.scene.control.ScrollPane;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
 import javafx.scene.control.TextField;
 import javafx.scene.image.Image;
 import javafx.scene.layout.AnchorPane;
-import javafx.scene.layout.VBox;
+import ui.Ui;
 
 import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Controller for the main GUI.
+ *
+ * The conversation is shown in a virtualized ListView: only the visible messages have a dialog box,
+ * and those boxes are reused as the user scrolls. At most {@code historyLimit} messages are kept.
  */
 public class GenesisMainWindow extends AnchorPane {
+    private static final String PENDING_REPLY = "...";
+    private static final int DEFAULT_HISTORY_LIMIT = 500;
+    private static final double CELL_PADDING = 20.0;
+
     @FXML
-    private ScrollPane scrollPane;
-    @FXML
-    private VBox dialogContainer;
+    private ListView<Message> conversationView;
     @FXML
     private TextField userInput;
     @FXML
     private Button sendButton;
 
     private Genesis genesis;
+    private final ObservableList<Message> conversation = FXCollections.observableArrayList();
+    private int historyLimit = DEFAULT_HISTORY_LIMIT;
+
+    // One thread per window, so its commands run in the order they were entered.
+    private final ExecutorService commandExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "genesis-commands");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     private Image userImage = new Image(this.getClass().getResourceAsStream("/images/user.png"));
     private Image genesisImage = new Image(this.getClass().getResourceAsStream("/images/jorda.png"));
 
     @FXML
     public void initialize() {
-        scrollPane.vvalueProperty().bind(dialogContainer.heightProperty());
+        conversationView.setItems(conversation);
+        conversationView.setCellFactory(view -> new DialogCell());
+        conversationView.setFocusTraversable(false);
     }
 
     /** Injects the Duke instance */
@@ -40,19 +62,33 @@ public class GenesisMainWindow extends AnchorPane {
         genesis = g;
         displayWelcomeMessage();
     }
+
+    /**
+     * Sets how many messages the conversation keeps. Older messages are dropped first.
+     *
+     * @param historyLimit The maximum number of messages to keep.
+     */
+    public void setHistoryLimit(int historyLimit) {
+        assert historyLimit > 0 : "History limit should be positive!";
+        this.historyLimit = historyLimit;
+        trimHistory();
+    }
+
     private void displayWelcomeMessage() {
         if (genesis != null) {
             String welcomeMessage = genesis.initialise();
-            dialogContainer.getChildren().add(
-                    DialogBox.getGenesisDialog(welcomeMessage, genesisImage)
-            );
+            addMessages(new Message(welcomeMessage, false));
         } else {
             System.out.println("Genesis instance is null!");
         }
     }
+
     /**
-     * Creates two dialog boxes, one echoing user input and the other containing Duke's reply and then appends them to
-     * the dialog container. Clears the user input after processing.
+     * Creates two messages, one echoing user input and the other containing Duke's reply and then appends them to
+     * the conversation. Clears the user input after processing.
+     *
+     * The command itself runs on a background thread. The reply shows a pending marker until the
+     * response is ready, so the window stays responsive while a slow command runs.
      */
     @FXML
     private void handleUserInput() {
@@ -63,11 +99,76 @@ public class GenesisMainWindow extends AnchorPane {
         }*/
 
         String input = userInput.getText();
-        String response = genesis.ui.handleInput(input, false);
-        dialogContainer.getChildren().addAll(
-                DialogBox.getUserDialog(input, userImage),
-                DialogBox.getGenesisDialog(response, genesisImage)
-        );
+        Message pending = new Message(PENDING_REPLY, false);
+        addMessages(new Message(input, true), pending);
         userInput.clear();
+        commandExecutor.execute(() -> {
+            String response;
+            try {
+                response = genesis.ui.handleInput(input, false);
+            } catch (RuntimeException e) {
+                response = "Something went wrong: " + e.getMessage();
+            }
+            Message reply = new Message(response, false);
+            Platform.runLater(() -> {
+                // The pending reply is near the end, unless the history limit has already dropped it.
+                int index = conversation.lastIndexOf(pending);
+                if (index >= 0) {
+                    conversation.set(index, reply);
+                }
+                if (Ui.isExit(input)) {
+                    Platform.exit();
+                }
+            });
+        });
+    }
+
+    private void addMessages(Message... messages) {
+        conversation.addAll(messages);
+        trimHistory();
+        conversationView.scrollTo(conversation.size() - 1);
+    }
+
+    private void trimHistory() {
+        if (conversation.size() > historyLimit) {
+            conversation.remove(0, conversation.size() - historyLimit);
+        }
+    }
+
+    /**
+     * A single line of the conversation.
+     */
+    private static class Message {
+        private final String text;
+        private final boolean isUser;
+
+        private Message(String text, boolean isUser) {
+            this.text = text;
+            this.isUser = isUser;
+        }
+    }
+
+    /**
+     * A list cell that shows a message in a dialog box built once for the cell.
+     */
+    private class DialogCell extends ListCell<Message> {
+        private final DialogBox dialogBox = DialogBox.getUserDialog("", userImage);
+
+        private DialogCell() {
+            dialogBox.prefWidthProperty().bind(conversationView.widthProperty().subtract(CELL_PADDING));
+            dialogBox.maxWidthProperty().bind(dialogBox.prefWidthProperty());
+            setText(null);
+        }
+
+        @Override
+        protected void updateItem(Message message, boolean isEmpty) {
+            super.updateItem(message, isEmpty);
+            if (isEmpty || message == null) {
+                setGraphic(null);
+                return;
+            }
+            dialogBox.show(message.text, message.isUser ? userImage : genesisImage, !message.isUser);
+            setGraphic(dialogBox);
+        }
     }
 }
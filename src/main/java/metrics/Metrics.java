@@ -0,0 +1,353 @@
+package metrics;
+
+import deadline.Deadline;
+import event.Event;
+import latencyhistogram.LatencyHistogram;
+import metricsmxbean.MetricsMXBean;
+import storage.Storage;
+import taskmanager.TaskManager;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Collects counters and latency histograms for command execution and storage, and exposes them
+ * through JMX and the stats command.
+ *
+ * Each command is timed in three phases: parsing the input, executing the handler, and recording
+ * the change with storage. Disk writes happen later on the storage writer thread and are counted
+ * separately as flushes. When disabled, every recording method returns after reading one flag.
+ */
+public class Metrics implements MetricsMXBean {
+    private static final String DOMAIN = "genesis";
+    private static final String OTHER_COMMAND = "other";
+
+    /**
+     * The management interface of the metrics for one command keyword.
+     */
+    public interface CommandMXBean {
+        long getCount();
+
+        long getErrorCount();
+
+        double getMeanParseMicros();
+
+        double getMeanExecuteMicros();
+
+        double getMeanPersistMicros();
+
+        double getP50ExecuteMicros();
+
+        double getP99ExecuteMicros();
+
+        double getMaxExecuteMicros();
+    }
+
+    protected TaskManager taskManager;
+    protected Storage storage;
+
+    private volatile boolean isEnabled;
+    private volatile boolean isRegistered;
+    private final ConcurrentHashMap<String, CommandStats> commands = new ConcurrentHashMap<>();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder storageErrors = new LongAdder();
+    private final LatencyHistogram flushes = new LatencyHistogram();
+    private final ThreadLocal<long[]> persistNanos = ThreadLocal.withInitial(() -> new long[1]);
+
+    /**
+     * Constructs disabled Metrics for the given TaskManager and Storage.
+     *
+     * @param taskManager The TaskManager whose tasks are counted, or null.
+     * @param storage The Storage whose queue depth is reported, or null.
+     */
+    public Metrics(TaskManager taskManager, Storage storage) {
+        this.taskManager = taskManager;
+        this.storage = storage;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return this.isEnabled;
+    }
+
+    @Override
+    public void setEnabled(boolean isEnabled) {
+        this.isEnabled = isEnabled;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server under the "genesis" domain.
+     * Command metrics are registered as each command is first used.
+     */
+    public void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(this, new ObjectName(DOMAIN + ":type=Metrics"));
+            isRegistered = true;
+            for (var entry : commands.entrySet()) {
+                registerCommand(entry.getKey(), entry.getValue());
+            }
+        } catch (JMException e) {
+            System.out.println("Error registering metrics: " + e.getMessage());
+        }
+    }
+
+    private void registerCommand(String keyword, CommandStats stats) {
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":type=Command,name=" + ObjectName.quote(keyword));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(stats, name);
+        } catch (JMException e) {
+            System.out.println("Error registering metrics for " + keyword + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Forgets any persist time recorded on this thread, before a command starts.
+     */
+    public void beginCommand() {
+        if (isEnabled) {
+            persistNanos.get()[0] = 0;
+        }
+    }
+
+    /**
+     * Adds time spent recording a change with storage to the command running on this thread.
+     *
+     * @param nanos The time spent, in nanoseconds.
+     */
+    public void recordPersist(long nanos) {
+        if (isEnabled) {
+            persistNanos.get()[0] += nanos;
+        }
+    }
+
+    /**
+     * Records one finished command. The persist time recorded on this thread since
+     * {@link #beginCommand()} is taken out of the execute time.
+     *
+     * @param keyword The command keyword, or null if the keyword is not a known command.
+     * @param parseNanos Time spent parsing the input.
+     * @param handleNanos Time spent in the handler, including persisting.
+     * @param isError Whether the command failed.
+     */
+    public void recordCommand(String keyword, long parseNanos, long handleNanos, boolean isError) {
+        if (!isEnabled) {
+            return;
+        }
+        long persist = persistNanos.get()[0];
+        CommandStats stats = commands.get(keyword == null ? OTHER_COMMAND : keyword);
+        if (stats == null) {
+            stats = commands.computeIfAbsent(keyword == null ? OTHER_COMMAND : keyword, key -> {
+                CommandStats added = new CommandStats();
+                if (isRegistered) {
+                    registerCommand(key, added);
+                }
+                return added;
+            });
+        }
+        stats.count.increment();
+        if (isError) {
+            stats.errors.increment();
+        }
+        stats.parse.record(parseNanos);
+        stats.execute.record(handleNanos - persist);
+        stats.persist.record(persist);
+    }
+
+    /**
+     * Records one write to disk made by storage.
+     *
+     * @param bytes The number of bytes written.
+     * @param nanos The time the write took, including any sync.
+     */
+    public void recordFlush(long bytes, long nanos) {
+        if (isEnabled) {
+            bytesWritten.add(bytes);
+            flushes.record(nanos);
+        }
+    }
+
+    /**
+     * Counts a failed storage operation.
+     */
+    public void recordStorageError() {
+        if (isEnabled) {
+            storageErrors.increment();
+        }
+    }
+
+    @Override
+    public long getCommandCount() {
+        long total = 0;
+        for (CommandStats stats : commands.values()) {
+            total += stats.getCount();
+        }
+        return total;
+    }
+
+    @Override
+    public long getErrorCount() {
+        long total = 0;
+        for (CommandStats stats : commands.values()) {
+            total += stats.getErrorCount();
+        }
+        return total;
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getFlushCount() {
+        return flushes.getCount();
+    }
+
+    @Override
+    public double getMeanFlushMillis() {
+        return flushes.getMeanNanos() / 1e6;
+    }
+
+    @Override
+    public double getMaxFlushMillis() {
+        return flushes.getMaxNanos() / 1e6;
+    }
+
+    @Override
+    public long getStorageErrorCount() {
+        return storageErrors.sum();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return storage == null ? 0 : storage.getQueueDepth();
+    }
+
+    /**
+     * Counts the tasks in the list by type, plus how many are done. Counted over the list when
+     * asked, so keeping these numbers costs nothing while commands run.
+     *
+     * @return The counts keyed by "todo", "deadline", "event" and "done".
+     */
+    @Override
+    public Map<String, Integer> getTaskCounts() {
+        // Todos, deadlines, events and done tasks.
+        int[] tally = new int[4];
+        if (taskManager != null) {
+            taskManager.forEachTask(task -> {
+                if (task instanceof Deadline) {
+                    tally[1]++;
+                } else if (task instanceof Event) {
+                    tally[2]++;
+                } else {
+                    tally[0]++;
+                }
+                if (task.isComplete()) {
+                    tally[3]++;
+                }
+            });
+        }
+        Map<String, Integer> counts = new TreeMap<>();
+        counts.put("todo", tally[0]);
+        counts.put("deadline", tally[1]);
+        counts.put("event", tally[2]);
+        counts.put("done", tally[3]);
+        return counts;
+    }
+
+    /**
+     * Describes the collected metrics for the stats command.
+     *
+     * @return The report.
+     */
+    public String report() {
+        if (!isEnabled) {
+            return "Statistics are turned off.";
+        }
+        Map<String, Integer> tasks = getTaskCounts();
+        StringBuilder report = new StringBuilder("Here are the statistics since Genesis started:\n");
+        report.append("Tasks: ").append(tasks.get("todo")).append(" todo, ")
+                .append(tasks.get("deadline")).append(" deadline, ")
+                .append(tasks.get("event")).append(" event, ")
+                .append(tasks.get("done")).append(" done\n");
+        report.append("Commands: ").append(getCommandCount()).append(" run, ")
+                .append(getErrorCount()).append(" failed\n");
+        for (var entry : new TreeMap<>(commands).entrySet()) {
+            CommandStats stats = entry.getValue();
+            report.append("  ").append(entry.getKey()).append(": ").append(stats.getCount()).append(" run, ")
+                    .append(stats.getErrorCount()).append(" failed, parse ")
+                    .append(formatMicros(stats.getMeanParseMicros())).append(", execute ")
+                    .append(formatMicros(stats.getMeanExecuteMicros())).append(" (p99 ")
+                    .append(formatMicros(stats.getP99ExecuteMicros())).append("), persist ")
+                    .append(formatMicros(stats.getMeanPersistMicros())).append("\n");
+        }
+        report.append("Storage: ").append(getBytesWritten()).append(" bytes in ").append(getFlushCount())
+                .append(" writes, mean ").append(String.format("%.2f", getMeanFlushMillis())).append(" ms, max ")
+                .append(String.format("%.2f", getMaxFlushMillis())).append(" ms, ")
+                .append(getQueueDepth()).append(" waiting, ")
+                .append(getStorageErrorCount()).append(" failed\n");
+        return report.toString();
+    }
+
+    private static String formatMicros(double micros) {
+        return String.format("%.1f us", micros);
+    }
+
+    /**
+     * The counters and histograms for one command keyword.
+     */
+    private static class CommandStats implements CommandMXBean {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LatencyHistogram parse = new LatencyHistogram();
+        private final LatencyHistogram execute = new LatencyHistogram();
+        private final LatencyHistogram persist = new LatencyHistogram();
+
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+
+        @Override
+        public long getErrorCount() {
+            return errors.sum();
+        }
+
+        @Override
+        public double getMeanParseMicros() {
+            return parse.getMeanNanos() / 1e3;
+        }
+
+        @Override
+        public double getMeanExecuteMicros() {
+            return execute.getMeanNanos() / 1e3;
+        }
+
+        @Override
+        public double getMeanPersistMicros() {
+            return persist.getMeanNanos() / 1e3;
+        }
+
+        @Override
+        public double getP50ExecuteMicros() {
+            return execute.getPercentileNanos(50) / 1e3;
+        }
+
+        @Override
+        public double getP99ExecuteMicros() {
+            return execute.getPercentileNanos(99) / 1e3;
+        }
+
+        @Override
+        public double getMaxExecuteMicros() {
+            return execute.getMaxNanos() / 1e3;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package metricsmxbean;
+
+import java.util.Map;
+
+/**
+ * The management interface of the application-wide Genesis metrics, as seen over JMX.
+ */
+public interface MetricsMXBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean isEnabled);
+
+    long getCommandCount();
+
+    long getErrorCount();
+
+    long getBytesWritten();
+
+    long getFlushCount();
+
+    double getMeanFlushMillis();
+
+    double getMaxFlushMillis();
+
+    long getStorageErrorCount();
+
+    int getQueueDepth();
+
+    /**
+     * Returns the number of tasks of each type, and how many are done.
+     *
+     * @return The counts keyed by "todo", "deadline", "event" and "done".
+     */
+    Map<String, Integer> getTaskCounts();
+}
@@ -0,0 +1,364 @@
+package operationlog;
+
+import command.Command;
+import exception.GenesisException;
+import task.Task;
+import taskmanager.TaskManager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The undo and redo history of a task manager: a log of the changes made to the task list, each
+ * stored as just enough to reverse it, such as the positions and tasks a delete removed.
+ *
+ * Undoing a change costs time in proportion to the change, not to the list. Changes are undone in
+ * the reverse order they were made, so the positions an operation remembers are still right when it
+ * is undone. The log keeps at most a given number of operations and an estimated number of bytes,
+ * forgetting the oldest first.
+ */
+public class OperationLog {
+    private final int maxOperations;
+    private final long maxBytes;
+    private final ArrayDeque<Operation> undoable = new ArrayDeque<>();
+    private final ArrayDeque<Operation> redoable = new ArrayDeque<>();
+    private List<Operation> group;
+    private long bytes;
+
+    /**
+     * Constructs an empty OperationLog.
+     *
+     * @param maxOperations The most operations to keep.
+     * @param maxBytes The most bytes the kept operations may take up, estimated.
+     */
+    public OperationLog(int maxOperations, long maxBytes) {
+        assert maxOperations > 0 : "History should keep at least one operation!";
+        this.maxOperations = maxOperations;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Adds a change that was just made, forgetting anything that could have been redone.
+     *
+     * @param operation The change.
+     */
+    public synchronized void record(Operation operation) {
+        if (group != null) {
+            group.add(operation);
+            return;
+        }
+        for (Operation dropped : redoable) {
+            bytes -= dropped.getBytes();
+        }
+        redoable.clear();
+        if (operation.getBytes() > maxBytes) {
+            // Everything older would be undone at the wrong positions without this one.
+            clear();
+            return;
+        }
+        undoable.addLast(operation);
+        bytes += operation.getBytes();
+        while (undoable.size() > maxOperations || bytes > maxBytes) {
+            bytes -= undoable.removeFirst().getBytes();
+        }
+    }
+
+    /**
+     * Starts collecting changes into one operation, e.g. for a batch.
+     */
+    public synchronized void beginGroup() {
+        assert group == null : "Groups cannot be nested!";
+        group = new ArrayList<>();
+    }
+
+    /**
+     * Records the changes collected since {@link #beginGroup()} as one operation.
+     */
+    public synchronized void endGroup() {
+        List<Operation> operations = group;
+        group = null;
+        if (operations.size() == 1) {
+            record(operations.get(0));
+        } else if (!operations.isEmpty()) {
+            record(new Group(operations));
+        }
+    }
+
+    /**
+     * Forgets the changes collected since {@link #beginGroup()}, after they were rolled back.
+     */
+    public synchronized void abortGroup() {
+        group = null;
+    }
+
+    /**
+     * Forgets every operation, e.g. after changes that cannot be undone.
+     */
+    public synchronized void clear() {
+        undoable.clear();
+        redoable.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Takes the most recent change off the undo history.
+     *
+     * @return The change, or null if there is nothing to undo.
+     */
+    public synchronized Operation takeUndo() {
+        Operation operation = undoable.pollLast();
+        if (operation != null) {
+            bytes -= operation.getBytes();
+        }
+        return operation;
+    }
+
+    /**
+     * Takes the most recently undone change off the redo history.
+     *
+     * @return The change, or null if there is nothing to redo.
+     */
+    public synchronized Operation takeRedo() {
+        Operation operation = redoable.pollLast();
+        if (operation != null) {
+            bytes -= operation.getBytes();
+        }
+        return operation;
+    }
+
+    /**
+     * Puts a change that was just undone on the redo history.
+     *
+     * @param operation The change.
+     */
+    public synchronized void pushRedo(Operation operation) {
+        redoable.addLast(operation);
+        bytes += operation.getBytes();
+    }
+
+    /**
+     * Puts a change back on the undo history, after it was redone or could not be undone.
+     *
+     * @param operation The change.
+     */
+    public synchronized void pushUndo(Operation operation) {
+        undoable.addLast(operation);
+        bytes += operation.getBytes();
+    }
+
+    /**
+     * Returns the operation for tasks added at the given positions.
+     *
+     * @param positions The positions the tasks now have.
+     * @param tasks The added tasks, in position order.
+     * @return The operation.
+     */
+    public static Operation added(BitSet positions, List<Task> tasks) {
+        return new Membership(positions, tasks, true);
+    }
+
+    /**
+     * Returns the operation for tasks deleted from the given positions.
+     *
+     * @param positions The positions the tasks had.
+     * @param tasks The deleted tasks, in position order.
+     * @return The operation.
+     */
+    public static Operation removed(BitSet positions, List<Task> tasks) {
+        return new Membership(positions, tasks, false);
+    }
+
+    /**
+     * Returns the operation for tasks marked or unmarked at the given positions. Only tasks whose
+     * state actually changed should be included.
+     *
+     * @param positions The positions of the changed tasks.
+     * @param isComplete Whether the tasks were marked, rather than unmarked.
+     * @return The operation.
+     */
+    public static Operation completed(BitSet positions, boolean isComplete) {
+        return new Completion(positions, isComplete);
+    }
+
+    /**
+     * A change to the task list that can be undone and redone.
+     */
+    public interface Operation {
+        /**
+         * Reverses the change.
+         *
+         * @param taskManager The task manager the change was made to.
+         * @param records Receives the commands that replay the reversal, for the journal.
+         * @throws GenesisException If the change can no longer be reversed.
+         */
+        void undo(TaskManager taskManager, List<String> records) throws GenesisException;
+
+        /**
+         * Makes the change again after it was undone.
+         *
+         * @param taskManager The task manager the change was made to.
+         * @param records Receives the commands that replay the change, for the journal.
+         * @throws GenesisException If the change can no longer be made.
+         */
+        void redo(TaskManager taskManager, List<String> records) throws GenesisException;
+
+        /**
+         * Returns a short description of the change, e.g. "deleted 3 tasks".
+         */
+        String describe();
+
+        /**
+         * Returns roughly how much memory the operation takes up.
+         */
+        long getBytes();
+    }
+
+    private static String count(int count) {
+        return count == 1 ? "1 task" : count + " tasks";
+    }
+
+    /**
+     * Tasks added to or deleted from the list.
+     */
+    private static class Membership implements Operation {
+        private final BitSet positions;
+        private final List<Task> tasks;
+        private final boolean isAdd;
+
+        private Membership(BitSet positions, List<Task> tasks, boolean isAdd) {
+            this.positions = positions;
+            this.tasks = tasks;
+            this.isAdd = isAdd;
+        }
+
+        @Override
+        public void undo(TaskManager taskManager, List<String> records) throws GenesisException {
+            if (isAdd) {
+                delete(taskManager, records);
+            } else {
+                insert(taskManager, records);
+            }
+        }
+
+        @Override
+        public void redo(TaskManager taskManager, List<String> records) throws GenesisException {
+            if (isAdd) {
+                insert(taskManager, records);
+            } else {
+                delete(taskManager, records);
+            }
+        }
+
+        private void delete(TaskManager taskManager, List<String> records) throws GenesisException {
+            taskManager.deleteTasks(positions);
+            records.add("delete " + Command.formatSelection(positions));
+        }
+
+        private void insert(TaskManager taskManager, List<String> records) throws GenesisException {
+            taskManager.insertTasks(positions, tasks);
+            int i = 0;
+            for (int position = positions.nextSetBit(0); position >= 0; position = positions.nextSetBit(position + 1)) {
+                Task task = tasks.get(i++);
+                records.add("restore " + (position + 1) + " " + task.getId() + " "
+                        + (task.isComplete() ? "X" : "-") + " " + task.getInput());
+            }
+        }
+
+        @Override
+        public String describe() {
+            return (isAdd ? "added " : "deleted ") + count(tasks.size());
+        }
+
+        @Override
+        public long getBytes() {
+            long total = 48 + positions.size() / 8;
+            for (Task task : tasks) {
+                total += 64 + 2L * task.getDescription().length();
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Tasks marked or unmarked.
+     */
+    private static class Completion implements Operation {
+        private final BitSet positions;
+        private final boolean isComplete;
+
+        private Completion(BitSet positions, boolean isComplete) {
+            this.positions = positions;
+            this.isComplete = isComplete;
+        }
+
+        @Override
+        public void undo(TaskManager taskManager, List<String> records) throws GenesisException {
+            apply(taskManager, records, !isComplete);
+        }
+
+        @Override
+        public void redo(TaskManager taskManager, List<String> records) throws GenesisException {
+            apply(taskManager, records, isComplete);
+        }
+
+        private void apply(TaskManager taskManager, List<String> records, boolean isMark) throws GenesisException {
+            if (isMark) {
+                taskManager.markTasks(positions);
+            } else {
+                taskManager.unmarkTasks(positions);
+            }
+            records.add((isMark ? "mark " : "unmark ") + Command.formatSelection(positions));
+        }
+
+        @Override
+        public String describe() {
+            return (isComplete ? "marked " : "unmarked ") + count(positions.cardinality());
+        }
+
+        @Override
+        public long getBytes() {
+            return 32 + positions.size() / 8;
+        }
+    }
+
+    /**
+     * Several changes made as one unit, such as a batch.
+     */
+    private static class Group implements Operation {
+        private final List<Operation> operations;
+
+        private Group(List<Operation> operations) {
+            this.operations = operations;
+        }
+
+        @Override
+        public void undo(TaskManager taskManager, List<String> records) throws GenesisException {
+            for (int i = operations.size() - 1; i >= 0; i--) {
+                operations.get(i).undo(taskManager, records);
+            }
+        }
+
+        @Override
+        public void redo(TaskManager taskManager, List<String> records) throws GenesisException {
+            for (Operation operation : operations) {
+                operation.redo(taskManager, records);
+            }
+        }
+
+        @Override
+        public String describe() {
+            return "a batch of " + operations.size() + " changes";
+        }
+
+        @Override
+        public long getBytes() {
+            long total = 16;
+            for (Operation operation : operations) {
+                total += operation.getBytes();
+            }
+            return total;
+        }
+    }
+}
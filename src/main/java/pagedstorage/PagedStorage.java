@@ -0,0 +1,121 @@
+package pagedstorage;
+
+import commandparser.CommandParser;
+import pagedstore.PagedTaskStore;
+import storage.Storage;
+import taskmanager.TaskManager;
+import ui.Ui;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists tasks kept in a {@link PagedTaskStore}. The page file is itself the saved task list, so
+ * there is no journal or snapshot: recording a command only schedules a flush of the changed pages,
+ * which coalesces every change made within {@code maxDelayMillis}.
+ *
+ * The first time the store is opened, it is filled from the snapshot, journals or task file of the
+ * in-memory storage, if there are any.
+ */
+public class PagedStorage extends Storage {
+    protected PagedTaskStore store;
+
+    private final long maxDelayMillis;
+    private final ScheduledExecutorService flusher;
+    private boolean isFlushScheduled;
+
+    /**
+     * Constructs a PagedStorage for the given store.
+     *
+     * @param taskManager The TaskManager associated with this storage.
+     * @param store The store holding the tasks.
+     * @param dataDirectory The directory holding the store, and any data to import into it.
+     * @param maxDelayMillis How long a recorded change may wait before it is written out.
+     */
+    public PagedStorage(TaskManager taskManager, PagedTaskStore store, Path dataDirectory, long maxDelayMillis) {
+        super(taskManager, dataDirectory);
+        this.store = store;
+        this.maxDelayMillis = maxDelayMillis;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "genesis-pager");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Imports the in-memory storage's data into the store if the store is new. Otherwise there is
+     * nothing to load: pages are read as they are needed.
+     *
+     * @param commandParser The command parser used to handle commands.
+     * @param ui The UI component to handle user inputs.
+     */
+    @Override
+    public void loadTasks(CommandParser commandParser, Ui ui) {
+        this.commandParser = commandParser;
+        if (store.isNew()) {
+            super.loadTasks(commandParser, ui);
+            flush();
+        }
+    }
+
+    @Override
+    public void record(String command) {
+        long start = System.nanoTime();
+        synchronized (this) {
+            if (!isFlushScheduled) {
+                try {
+                    flusher.schedule(this::flush, maxDelayMillis, TimeUnit.MILLISECONDS);
+                    isFlushScheduled = true;
+                } catch (RejectedExecutionException e) {
+                    // Already closed, and closing flushed everything.
+                }
+            }
+        }
+        metrics.recordPersist(System.nanoTime() - start);
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return store.getDirtyPageCount();
+    }
+
+    @Override
+    public void writeTasks() {
+        flush();
+    }
+
+    /**
+     * Writes every changed page and the page directory, and syncs them to disk.
+     */
+    @Override
+    public void flush() {
+        synchronized (this) {
+            isFlushScheduled = false;
+        }
+        long start = System.nanoTime();
+        int pages = store.getDirtyPageCount();
+        try {
+            store.flush();
+            metrics.recordFlush((long) pages * PagedTaskStore.PAGE_SIZE, System.nanoTime() - start);
+        } catch (IOException e) {
+            metrics.recordStorageError();
+            System.out.println("Error writing to task store: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdown();
+        super.close();
+        try {
+            store.close();
+        } catch (IOException e) {
+            System.out.println("Error closing task store: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,785 @@
+package pagedstore;
+
+import exception.GenesisException;
+import task.Task;
+import taskcodec.TaskCodec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps the task list in a file of fixed-size pages, so only the pages in use need to be in memory.
+ *
+ * Tasks are stored in list order, which is also ascending id order, packed into pages of
+ * {@value #PAGE_SIZE} bytes. A small directory in memory records, for every page in list order, its
+ * first id and how many tasks it holds; it is saved next to the page file on every flush, so opening
+ * the store only reads the directory. Pages are read through a least-recently-used cache of bounded
+ * size, and changed pages are written back when they are evicted or flushed.
+ *
+ * Every page carries a checksum. The file header and the directory both carry the epoch of the last
+ * flush, and the first page written back after a flush bumps the epoch in the header, so a crash
+ * before the next flush leaves a directory that no longer matches. Such a directory is rebuilt by
+ * reading every page; a page that fails its checksum then stops the store from opening, rather than
+ * its tasks being dropped.
+ */
+public class PagedTaskStore {
+    public static final int PAGE_SIZE = 8192;
+
+    private static final int MAGIC = 0x474E5350;
+    private static final short VERSION = 1;
+    private static final int FILE_HEADER = 18;
+    private static final int PAGE_HEADER = 10;
+
+    private final Path pageFile;
+    private final Path directoryFile;
+    private final FileChannel channel;
+    private final int cachePages;
+    private final boolean isNew;
+    private final LinkedHashMap<Integer, Page> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    private List<PageInfo> directory = new ArrayList<>();
+    private ArrayDeque<Integer> freePages = new ArrayDeque<>();
+    private int pageCount = 1;
+    private int size;
+    private long nextId = 1;
+    private long epoch;
+    private boolean isDirectoryStale;
+    private int cursorPage;
+    private int cursorStart;
+
+    private boolean isInTransaction;
+    private List<PageInfo> savedDirectory;
+    private ArrayDeque<Integer> savedFreePages;
+    private int savedPageCount;
+    private int savedSize;
+    private long savedNextId;
+
+    private PagedTaskStore(Path dataDirectory, int cachePages) throws IOException {
+        Files.createDirectories(dataDirectory);
+        this.pageFile = dataDirectory.resolve("tasks.pages");
+        this.directoryFile = dataDirectory.resolve("tasks.pages.dir");
+        this.cachePages = cachePages;
+        this.isNew = !Files.exists(pageFile) || Files.size(pageFile) == 0;
+        this.channel = FileChannel.open(pageFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Opens the page store in the given directory, creating it if it does not exist yet.
+     *
+     * @param dataDirectory The directory holding the page file and its directory.
+     * @param cachePages The most pages to keep in memory.
+     * @return The opened store.
+     * @throws IOException If the files cannot be read or are not a page store.
+     */
+    public static PagedTaskStore open(Path dataDirectory, int cachePages) throws IOException {
+        assert cachePages > 0 : "Cache should hold at least one page!";
+        PagedTaskStore store = new PagedTaskStore(dataDirectory, cachePages);
+        try {
+            if (store.isNew) {
+                store.writeFileHeader();
+            } else {
+                store.readFileHeader();
+                if (!store.readDirectory()) {
+                    store.rebuildDirectory();
+                }
+            }
+        } catch (IOException e) {
+            store.channel.close();
+            throw e;
+        }
+        return store;
+    }
+
+    /**
+     * Returns whether the store was created by {@link #open}, rather than read from an earlier run.
+     *
+     * @return True if the store started out empty.
+     */
+    public boolean isNew() {
+        return this.isNew;
+    }
+
+    public synchronized int size() {
+        return this.size;
+    }
+
+    public synchronized long getNextId() {
+        return this.nextId;
+    }
+
+    /**
+     * Makes sure ids below the given value are never handed out again.
+     *
+     * @param nextId The lowest id that may be handed out.
+     */
+    public synchronized void reserveIds(long nextId) {
+        this.nextId = Math.max(this.nextId, nextId);
+    }
+
+    /**
+     * Returns the number of cached pages with changes not yet written to the page file.
+     *
+     * @return The number of dirty pages.
+     */
+    public synchronized int getDirtyPageCount() {
+        int dirty = 0;
+        for (Page page : cache.values()) {
+            if (page.isDirty) {
+                dirty++;
+            }
+        }
+        return dirty;
+    }
+
+    /**
+     * Adds a task to the end of the list. The task keeps its id if it is higher than every id in the
+     * store, and otherwise gets the next free one, so ids stay in list order.
+     *
+     * @param task The task to add.
+     * @throws GenesisException If the task is too long to fit in a page.
+     */
+    public synchronized void append(Task task) throws GenesisException {
+        if (task.getId() < nextId) {
+            task.setId(nextId);
+        }
+        addLast(task);
+    }
+
+    private void addLast(Task task) throws GenesisException {
+        nextId = Math.max(nextId, task.getId() + 1);
+        int length = TaskCodec.length(task);
+        if (length > PAGE_SIZE - PAGE_HEADER) {
+            throw new GenesisException("This task is too long to store!");
+        }
+        PageInfo last = directory.isEmpty() ? null : directory.get(directory.size() - 1);
+        Page page = last == null ? null : load(last);
+        if (page == null || page.bytes + length > PAGE_SIZE - PAGE_HEADER) {
+            last = new PageInfo(allocatePage(), task.getId(), 0);
+            directory.add(last);
+            page = new Page(last.number, new ArrayList<>(), 0);
+            cache.put(page.number, page);
+        }
+        page.tasks.add(task);
+        page.bytes += length;
+        page.isDirty = true;
+        last.count++;
+        size++;
+        evict();
+    }
+
+    /**
+     * Puts a task into the list at a position, keeping its id, e.g. to undo deleting it. A page that
+     * overflows is split in two.
+     *
+     * @param position The zero-based position the task should end up at.
+     * @param task The task, whose id should fall between those of its new neighbours.
+     * @throws GenesisException If the task is too long to fit in a page.
+     * @throws IndexOutOfBoundsException If the position is past the end of the list.
+     */
+    public synchronized void insert(int position, Task task) throws GenesisException {
+        if (position == size) {
+            addLast(task);
+            return;
+        }
+        int length = TaskCodec.length(task);
+        if (length > PAGE_SIZE - PAGE_HEADER) {
+            throw new GenesisException("This task is too long to store!");
+        }
+        nextId = Math.max(nextId, task.getId() + 1);
+        Locator locator = locate(position);
+        int pageIndex = cursorPage;
+        Page page = load(locator.info);
+        page.tasks.add(locator.offset, task);
+        page.bytes += length;
+        page.isDirty = true;
+        locator.info.count++;
+        if (locator.offset == 0) {
+            locator.info.firstId = task.getId();
+        }
+        size++;
+        if (page.bytes > PAGE_SIZE - PAGE_HEADER) {
+            split(page, locator.info, pageIndex);
+        }
+        resetCursor();
+        evict();
+    }
+
+    /**
+     * Splits an overflowing page into pages that each fit, halving its tasks by encoded size rather
+     * than by count, so a few long descriptions cannot leave one half still too large.
+     */
+    private void split(Page page, PageInfo info, int pageIndex) {
+        List<List<Task>> pieces = new ArrayList<>();
+        cut(page.tasks, pieces);
+        page.tasks = pieces.get(0);
+        page.bytes = bytesOf(page.tasks);
+        info.count = page.tasks.size();
+        for (int i = 1; i < pieces.size(); i++) {
+            List<Task> tasks = pieces.get(i);
+            PageInfo added = new PageInfo(allocatePage(), tasks.get(0).getId(), tasks.size());
+            Page piece = new Page(added.number, tasks, bytesOf(tasks));
+            piece.isDirty = true;
+            directory.add(pageIndex + i, added);
+            cache.put(added.number, piece);
+        }
+    }
+
+    /**
+     * Cuts a run of tasks in two where the encoded sizes of the halves are closest, and keeps
+     * cutting any half that still does not fit in a page.
+     */
+    private static void cut(List<Task> tasks, List<List<Task>> pieces) {
+        int total = bytesOf(tasks);
+        if (total <= PAGE_SIZE - PAGE_HEADER || tasks.size() == 1) {
+            pieces.add(new ArrayList<>(tasks));
+            return;
+        }
+        int best = 1;
+        int bestLarger = Integer.MAX_VALUE;
+        int left = 0;
+        for (int i = 1; i < tasks.size(); i++) {
+            left += TaskCodec.length(tasks.get(i - 1));
+            int larger = Math.max(left, total - left);
+            if (larger < bestLarger) {
+                best = i;
+                bestLarger = larger;
+            }
+        }
+        cut(tasks.subList(0, best), pieces);
+        cut(tasks.subList(best, tasks.size()), pieces);
+    }
+
+    private static int bytesOf(List<Task> tasks) {
+        int bytes = 0;
+        for (Task task : tasks) {
+            bytes += TaskCodec.length(task);
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the task at a position in the list.
+     *
+     * @param position The zero-based position.
+     * @return The task.
+     * @throws IndexOutOfBoundsException If there is no task at the position.
+     */
+    public synchronized Task get(int position) {
+        Locator locator = locate(position);
+        return load(locator.info).tasks.get(locator.offset);
+    }
+
+    /**
+     * Returns a run of tasks in list order, reading only the pages that hold them.
+     *
+     * @param offset The zero-based position of the first task.
+     * @param limit The most tasks to return.
+     * @return The tasks, fewer than the limit if the list ends first.
+     */
+    public synchronized List<Task> range(int offset, int limit) {
+        int end = (int) Math.min(size, (long) offset + limit);
+        List<Task> tasks = new ArrayList<>(Math.max(0, end - offset));
+        for (int i = offset; i < end; i++) {
+            tasks.add(get(i));
+        }
+        return tasks;
+    }
+
+    /**
+     * Returns the task with the given id, reading only the page that holds it.
+     *
+     * @param id The task id.
+     * @return The task, or null if there is no task with the id.
+     */
+    public synchronized Task findById(long id) {
+        int low = 0;
+        int high = directory.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (directory.get(middle).firstId <= id) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        if (directory.isEmpty()) {
+            return null;
+        }
+        for (Task task : load(directory.get(low)).tasks) {
+            if (task.getId() == id) {
+                return task;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Marks or unmarks the task at a position.
+     *
+     * @param position The zero-based position.
+     * @param isComplete Whether the task should be complete.
+     * @return The changed task.
+     * @throws IndexOutOfBoundsException If there is no task at the position.
+     */
+    public synchronized Task setComplete(int position, boolean isComplete) {
+        Locator locator = locate(position);
+        Page page = load(locator.info);
+        Task task = page.tasks.get(locator.offset);
+        if (isComplete) {
+            task.mark();
+        } else {
+            task.unmark();
+        }
+        page.isDirty = true;
+        return task;
+    }
+
+    /**
+     * Removes the tasks at the given positions, reading and rewriting each affected page once.
+     *
+     * @param positions The zero-based positions to remove.
+     * @return The removed tasks, in list order.
+     * @throws IndexOutOfBoundsException If any position has no task, in which case nothing is removed.
+     */
+    public synchronized List<Task> delete(BitSet positions) {
+        if (positions.length() > size) {
+            throw new IndexOutOfBoundsException("No task at position " + (positions.length() - 1));
+        }
+        List<Task> removed = new ArrayList<>();
+        List<PageInfo> kept = new ArrayList<>(directory.size());
+        int start = 0;
+        for (PageInfo info : directory) {
+            int end = start + info.count;
+            int next = positions.nextSetBit(start);
+            if (next < 0 || next >= end) {
+                kept.add(info);
+                start = end;
+                continue;
+            }
+            Page page = load(info);
+            List<Task> remaining = new ArrayList<>(info.count);
+            for (int i = 0; i < page.tasks.size(); i++) {
+                Task task = page.tasks.get(i);
+                if (positions.get(start + i)) {
+                    removed.add(task);
+                    page.bytes -= TaskCodec.length(task);
+                } else {
+                    remaining.add(task);
+                }
+            }
+            page.tasks = remaining;
+            page.isDirty = true;
+            info.count = remaining.size();
+            if (remaining.isEmpty()) {
+                // Written out as an empty page, so a rebuilt directory also sees it as free.
+                freePages.add(info.number);
+            } else {
+                info.firstId = remaining.get(0).getId();
+                kept.add(info);
+            }
+            start = end;
+        }
+        directory = kept;
+        size -= removed.size();
+        resetCursor();
+        evict();
+        return removed;
+    }
+
+    /**
+     * Passes every task to the action in list order. Pages that are not cached are read without
+     * being cached, so a full scan does not push the working set out of the cache.
+     *
+     * @param action The action to run on each task.
+     */
+    public synchronized void forEach(Consumer<Task> action) {
+        for (PageInfo info : directory) {
+            Page page = cache.get(info.number);
+            if (page == null) {
+                page = read(info.number);
+            }
+            for (Task task : page.tasks) {
+                action.accept(task);
+            }
+        }
+    }
+
+    /**
+     * Starts a transaction. Changed pages are written back first, and no page changed during the
+     * transaction is written until it commits, so a rollback only has to forget them.
+     */
+    public synchronized void begin() {
+        assert !isInTransaction : "Transactions cannot be nested!";
+        try {
+            writeDirtyPages();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write pages: " + e.getMessage(), e);
+        }
+        savedDirectory = copy(directory);
+        savedFreePages = new ArrayDeque<>(freePages);
+        savedPageCount = pageCount;
+        savedSize = size;
+        savedNextId = nextId;
+        isInTransaction = true;
+    }
+
+    /**
+     * Keeps the changes made since {@link #begin()}.
+     */
+    public synchronized void commit() {
+        isInTransaction = false;
+        savedDirectory = null;
+        savedFreePages = null;
+        evict();
+    }
+
+    /**
+     * Undoes every change made since {@link #begin()}. Tasks handed out during the transaction
+     * should not be used afterwards.
+     */
+    public synchronized void rollback() {
+        cache.values().removeIf(page -> page.isDirty);
+        directory = savedDirectory;
+        freePages = savedFreePages;
+        resetCursor();
+        pageCount = savedPageCount;
+        size = savedSize;
+        nextId = savedNextId;
+        isInTransaction = false;
+        savedDirectory = null;
+        savedFreePages = null;
+        evict();
+    }
+
+    /**
+     * Writes every changed page and the directory, and syncs them to disk. Does nothing during a
+     * transaction or once the store is closed.
+     *
+     * @throws IOException If writing fails.
+     */
+    public synchronized void flush() throws IOException {
+        if (isInTransaction || !channel.isOpen()) {
+            return;
+        }
+        writeDirtyPages();
+        channel.force(false);
+        epoch++;
+        writeDirectory();
+        writeFileHeader();
+        channel.force(false);
+        isDirectoryStale = false;
+    }
+
+    /**
+     * Flushes the store and closes the page file.
+     *
+     * @throws IOException If writing fails.
+     */
+    public synchronized void close() throws IOException {
+        if (!channel.isOpen()) {
+            return;
+        }
+        flush();
+        channel.close();
+    }
+
+    /**
+     * Finds the page holding a position. The walk starts from the page found last time when the
+     * position is at or after it, so reading the list in order costs O(1) per task.
+     */
+    private Locator locate(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("No task at position " + position);
+        }
+        if (position < cursorStart || cursorPage >= directory.size()) {
+            cursorPage = 0;
+            cursorStart = 0;
+        }
+        while (position - cursorStart >= directory.get(cursorPage).count) {
+            cursorStart += directory.get(cursorPage).count;
+            cursorPage++;
+        }
+        return new Locator(directory.get(cursorPage), position - cursorStart);
+    }
+
+    private void resetCursor() {
+        cursorPage = 0;
+        cursorStart = 0;
+    }
+
+    private Page load(PageInfo info) {
+        Page page = cache.get(info.number);
+        if (page == null) {
+            page = read(info.number);
+            cache.put(info.number, page);
+            evict();
+        }
+        return page;
+    }
+
+    /**
+     * Drops the least recently used pages until the cache is within its bound, writing back the
+     * changed ones. During a transaction changed pages stay, so the cache may grow past its bound.
+     */
+    private void evict() {
+        Iterator<Map.Entry<Integer, Page>> entries = cache.entrySet().iterator();
+        while (cache.size() > cachePages && entries.hasNext()) {
+            Page page = entries.next().getValue();
+            if (page.isDirty && isInTransaction) {
+                continue;
+            }
+            if (page.isDirty) {
+                try {
+                    write(page);
+                } catch (IOException e) {
+                    System.out.println("Error writing page " + page.number + ": " + e.getMessage());
+                    continue;
+                }
+            }
+            entries.remove();
+        }
+    }
+
+    private int allocatePage() {
+        Integer free = freePages.poll();
+        return free != null ? free : pageCount++;
+    }
+
+    private void writeDirtyPages() throws IOException {
+        for (Page page : cache.values()) {
+            if (page.isDirty) {
+                write(page);
+            }
+        }
+    }
+
+    private void write(Page page) throws IOException {
+        if (!isDirectoryStale) {
+            // The saved directory describes the pages as they were at the last flush.
+            epoch++;
+            writeFileHeader();
+            channel.force(false);
+            isDirectoryStale = true;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+        buffer.position(4);
+        buffer.putShort((short) page.tasks.size());
+        buffer.putInt(page.bytes);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(page.bytes);
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (Task task : page.tasks) {
+            TaskCodec.write(out, task, task.isComplete());
+        }
+        buffer.put(bytes.toByteArray());
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 4, PAGE_HEADER - 4 + page.bytes);
+        buffer.putInt(0, (int) crc.getValue());
+        buffer.rewind();
+        long offset = (long) page.number * PAGE_SIZE;
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer, offset);
+        }
+        page.isDirty = false;
+    }
+
+    private Page read(int number) {
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+            long offset = (long) number * PAGE_SIZE;
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, offset + buffer.position());
+                if (read < 0) {
+                    break;
+                }
+            }
+            int checksum = buffer.getInt(0);
+            int count = buffer.getShort(4);
+            int bytes = buffer.getInt(6);
+            if (bytes < 0 || bytes > PAGE_SIZE - PAGE_HEADER) {
+                throw new IOException("page " + number + " is corrupt");
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 4, PAGE_HEADER - 4 + bytes);
+            if ((int) crc.getValue() != checksum) {
+                throw new IOException("page " + number + " failed its checksum");
+            }
+            buffer.position(PAGE_HEADER);
+            List<Task> tasks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                tasks.add(TaskCodec.read(buffer));
+            }
+            return new Page(number, tasks, bytes);
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalStateException("Could not read the task store: " + e.getMessage(), e);
+        }
+    }
+
+    private void writeFileHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER);
+        header.putInt(MAGIC);
+        header.putShort(VERSION);
+        header.putInt(PAGE_SIZE);
+        header.putLong(epoch);
+        header.flip();
+        channel.write(header, 0);
+    }
+
+    private void readFileHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER);
+        channel.read(header, 0);
+        header.flip();
+        if (header.remaining() < FILE_HEADER || header.getInt() != MAGIC) {
+            throw new IOException("Not a Genesis task store: " + pageFile);
+        }
+        short version = header.getShort();
+        int pageSize = header.getInt();
+        if (version != VERSION || pageSize != PAGE_SIZE) {
+            throw new IOException("Unsupported task store version " + version);
+        }
+        epoch = header.getLong();
+        pageCount = (int) Math.max(1, (channel.size() + PAGE_SIZE - 1) / PAGE_SIZE);
+    }
+
+    private void writeDirectory() throws IOException {
+        Path temp = directoryFile.resolveSibling(directoryFile.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(temp))) {
+            out.writeInt(MAGIC);
+            out.writeLong(epoch);
+            out.writeLong(nextId);
+            out.writeInt(directory.size());
+            for (PageInfo info : directory) {
+                out.writeInt(info.number);
+                out.writeLong(info.firstId);
+                out.writeInt(info.count);
+            }
+        }
+        Files.move(temp, directoryFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads the saved directory.
+     *
+     * @return False if there is no directory, or it was saved at a different flush than the page file.
+     */
+    private boolean readDirectory() throws IOException {
+        if (!Files.exists(directoryFile)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(directoryFile))) {
+            if (in.readInt() != MAGIC || in.readLong() != epoch) {
+                return false;
+            }
+            nextId = in.readLong();
+            int count = in.readInt();
+            BitSet used = new BitSet(pageCount);
+            for (int i = 0; i < count; i++) {
+                PageInfo info = new PageInfo(in.readInt(), in.readLong(), in.readInt());
+                directory.add(info);
+                used.set(info.number);
+                size += info.count;
+            }
+            for (int number = used.nextClearBit(1); number < pageCount; number = used.nextClearBit(number + 1)) {
+                freePages.add(number);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Rebuilds the directory from the pages themselves, after the store was not closed cleanly.
+     *
+     * @throws IOException If a page cannot be read.
+     */
+    private void rebuildDirectory() throws IOException {
+        System.out.println("Rebuilding the task store directory...");
+        directory.clear();
+        freePages.clear();
+        size = 0;
+        for (int number = 1; number < pageCount; number++) {
+            Page page;
+            try {
+                page = read(number);
+            } catch (IllegalStateException e) {
+                throw new IOException("Could not rebuild the task store directory: " + e.getCause().getMessage(), e);
+            }
+            if (page.tasks.isEmpty()) {
+                freePages.add(number);
+                continue;
+            }
+            directory.add(new PageInfo(number, page.tasks.get(0).getId(), page.tasks.size()));
+            size += page.tasks.size();
+            nextId = Math.max(nextId, page.tasks.get(page.tasks.size() - 1).getId() + 1);
+        }
+        directory.sort((a, b) -> Long.compare(a.firstId, b.firstId));
+    }
+
+    private static List<PageInfo> copy(List<PageInfo> infos) {
+        List<PageInfo> copies = new ArrayList<>(infos.size());
+        for (PageInfo info : infos) {
+            copies.add(new PageInfo(info.number, info.firstId, info.count));
+        }
+        return copies;
+    }
+
+    /**
+     * Where a page sits in the list: its number in the page file, its first id and its task count.
+     */
+    private static class PageInfo {
+        private final int number;
+        private long firstId;
+        private int count;
+
+        private PageInfo(int number, long firstId, int count) {
+            this.number = number;
+            this.firstId = firstId;
+            this.count = count;
+        }
+    }
+
+    /**
+     * The decoded tasks of one page, and the number of bytes they take up encoded.
+     */
+    private static class Page {
+        private final int number;
+        private List<Task> tasks;
+        private int bytes;
+        private boolean isDirty;
+
+        private Page(int number, List<Task> tasks, int bytes) {
+            this.number = number;
+            this.tasks = tasks;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * A task's page and its position within that page.
+     */
+    private static class Locator {
+        private final PageInfo info;
+        private final int offset;
+
+        private Locator(PageInfo info, int offset) {
+            this.info = info;
+            this.offset = offset;
+        }
+    }
+}
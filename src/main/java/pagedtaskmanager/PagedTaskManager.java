@@ -0,0 +1,400 @@
+package pagedtaskmanager;
+
+import deadline.Deadline;
+import deadlineindex.DeadlineIndex;
+import event.Event;
+import exception.GenesisException;
+import operationlog.OperationLog;
+import pagedstore.PagedTaskStore;
+import task.Task;
+import taskmanager.TaskManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * A TaskManager whose tasks live in a {@link PagedTaskStore} rather than on the heap, for lists too
+ * large to keep in memory.
+ *
+ * Listing, marking, unmarking and deleting only read the pages they touch. There are no in-memory
+ * search, event or deadline indexes: find, on, between and upcoming scan the store instead. Every
+ * change takes the exclusive lock, so a failed batch can roll the store back.
+ */
+public class PagedTaskManager extends TaskManager {
+    protected PagedTaskStore store;
+
+    // Hashes of the normalised descriptions, for the duplicate check. Filled in on the first add
+    // rather than at startup, so opening a large store stays fast.
+    private HashSet<Long> fingerprints;
+
+    /**
+     * Constructs a PagedTaskManager over the given store.
+     *
+     * @param store The store holding the tasks.
+     */
+    public PagedTaskManager(PagedTaskStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Returns a snapshot of the task list, read from the store in one pass. This reads every page,
+     * so prefer {@link #size()}, {@link #listTasks} or {@link #forEachTask} on large lists.
+     *
+     * @return The list of tasks.
+     */
+    @Override
+    public List<Task> getTasks() {
+        List<Task> tasks = new ArrayList<>();
+        store.forEach(tasks::add);
+        return Collections.unmodifiableList(tasks);
+    }
+
+    @Override
+    public int size() {
+        return store.size();
+    }
+
+    @Override
+    public void forEachTask(Consumer<? super Task> action) {
+        store.forEach(action::accept);
+    }
+
+    @Override
+    public <T> T transactionally(Mutation<T> mutation) throws GenesisException {
+        return atomically(() -> {
+            store.begin();
+            history.beginGroup();
+            try {
+                T result = mutation.apply();
+                store.commit();
+                history.endGroup();
+                return result;
+            } catch (GenesisException | RuntimeException e) {
+                store.rollback();
+                history.abortGroup();
+                fingerprints = null;
+                throw e;
+            }
+        });
+    }
+
+    @Override
+    public Set<Task> search(String term, boolean isCaseInsensitive) {
+        String needle = isCaseInsensitive ? term.toLowerCase(Locale.ROOT) : term;
+        Set<Task> matches = new HashSet<>();
+        store.forEach(task -> {
+            String description = task.getDescription();
+            if ((isCaseInsensitive ? description.toLowerCase(Locale.ROOT) : description).contains(needle)) {
+                matches.add(task);
+            }
+        });
+        return matches;
+    }
+
+    /**
+     * Returns the number of tasks, since a search here always scans the whole store.
+     */
+    @Override
+    public int estimateSearch(String term) {
+        return store.size();
+    }
+
+    /**
+     * Returns the number of tasks, since finding events here always scans the whole store.
+     */
+    @Override
+    public int getEventCount() {
+        return store.size();
+    }
+
+    @Override
+    public List<Event> findEvents(LocalDate from, LocalDate to) {
+        long first = from.toEpochDay();
+        long last = to.toEpochDay();
+        List<Event> matches = new ArrayList<>();
+        store.forEach(task -> {
+            if (task instanceof Event && ((Event) task).getStartDay() <= last
+                    && ((Event) task).getEndDay() >= first) {
+                matches.add((Event) task);
+            }
+        });
+        matches.sort(Comparator.comparingLong(Event::getStartDay).thenComparingLong(Event::getId));
+        return matches;
+    }
+
+    @Override
+    public List<Deadline> nextDeadlines(int count) {
+        return scanDeadlines().next(count);
+    }
+
+    @Override
+    public List<Deadline> deadlinesDueBy(LocalDate date) {
+        return scanDeadlines().dueBy(date);
+    }
+
+    /**
+     * Builds a due-date index over the deadlines that are not complete yet by scanning the store.
+     */
+    private DeadlineIndex scanDeadlines() {
+        DeadlineIndex index = new DeadlineIndex();
+        store.forEach(task -> {
+            if (task instanceof Deadline && !task.isComplete()) {
+                index.add((Deadline) task);
+            }
+        });
+        return index;
+    }
+
+    /**
+     * Returns the number of tasks, since the deadline index here is built by scanning the store.
+     */
+    @Override
+    public int getPendingDeadlineCount() {
+        return store.size();
+    }
+
+    @Override
+    public long getNextId() {
+        return store.getNextId();
+    }
+
+    @Override
+    public void reserveIds(long nextId) {
+        store.reserveIds(nextId);
+    }
+
+    @Override
+    public String addTask(Task task, boolean isSilent) throws GenesisException {
+        int size = atomically(() -> {
+            long fingerprint = fingerprint(task);
+            if (getFingerprints().contains(fingerprint)) {
+                throw new GenesisException("This task already exists in the list.");
+            }
+            store.append(task);
+            fingerprints.add(fingerprint);
+            recordOperation(OperationLog.added(single(store.size() - 1), List.of(task)));
+            return store.size();
+        });
+        if (isSilent) {
+            return null;
+        }
+        return "Got it. I've added this task:\n" + task.toString() + "\nNow you have " + size
+                + " tasks in the list.";
+    }
+
+    @Override
+    public void addAll(List<Task> batch) throws GenesisException {
+        atomically(() -> {
+            HashSet<Long> batchFingerprints = new HashSet<>();
+            for (Task task : batch) {
+                long fingerprint = fingerprint(task);
+                if (getFingerprints().contains(fingerprint) || !batchFingerprints.add(fingerprint)) {
+                    throw new GenesisException("This task already exists in the list: " + task.getDescription());
+                }
+            }
+            BitSet positions = new BitSet();
+            positions.set(store.size(), store.size() + batch.size());
+            for (Task task : batch) {
+                store.append(task);
+            }
+            fingerprints.addAll(batchFingerprints);
+            recordOperation(OperationLog.added(positions, new ArrayList<>(batch)));
+            return null;
+        });
+    }
+
+    @Override
+    public void loadTasks(List<Task> loadedTasks) {
+        try {
+            atomically(() -> {
+                for (Task task : loadedTasks) {
+                    if (getFingerprints().add(fingerprint(task))) {
+                        store.append(task);
+                    }
+                }
+                return null;
+            });
+        } catch (GenesisException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    @Override
+    public void insertTasks(BitSet positions, List<Task> inserted) throws GenesisException {
+        atomically(() -> {
+            if (positions.length() > store.size() + inserted.size()) {
+                throw new GenesisException("Invalid task number!");
+            }
+            HashSet<Long> insertedFingerprints = new HashSet<>();
+            HashSet<Long> ids = new HashSet<>();
+            for (Task task : inserted) {
+                long fingerprint = fingerprint(task);
+                if (getFingerprints().contains(fingerprint) || !insertedFingerprints.add(fingerprint)) {
+                    throw new GenesisException("This task already exists in the list: " + task.getDescription());
+                }
+                if (task.getId() > 0 && (!ids.add(task.getId()) || store.findById(task.getId()) != null)) {
+                    throw new GenesisException("Task id " + task.getId() + " is already in use.");
+                }
+            }
+            int i = 0;
+            for (int position = positions.nextSetBit(0); position >= 0; position = positions.nextSetBit(position + 1)) {
+                store.insert(position, inserted.get(i++));
+            }
+            fingerprints.addAll(insertedFingerprints);
+            recordOperation(OperationLog.added((BitSet) positions.clone(), new ArrayList<>(inserted)));
+            return null;
+        });
+    }
+
+    @Override
+    public String listTasks(int offset, int limit) {
+        if (store.size() == 0) {
+            return "No tasks in the list.";
+        }
+        if (offset >= store.size()) {
+            return "No tasks in this range.";
+        }
+        StringBuilder builder = new StringBuilder();
+        try {
+            appendTasks(builder, offset, limit);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public void appendTasks(Appendable out, int offset, int limit) throws IOException {
+        List<Task> page = store.range(offset, limit);
+        for (int i = 0; i < page.size(); i++) {
+            if (i > 0) {
+                out.append('\n');
+            }
+            out.append(String.valueOf(offset + i + 1)).append(". ").append(page.get(i).toString());
+        }
+    }
+
+    @Override
+    public String markTask(int index, Runnable then) throws GenesisException {
+        Task task = setComplete(index, true, then);
+        return "Nice! I've marked this task as done:\n" + task.getDescription();
+    }
+
+    @Override
+    public String unmarkTask(int index, Runnable then) throws GenesisException {
+        Task task = setComplete(index, false, then);
+        return "Ok. I've marked this task as not done yet:\n" + task.getDescription();
+    }
+
+    private Task setComplete(int index, boolean isComplete, Runnable then) throws GenesisException {
+        return atomically(() -> {
+            if (index < 0 || index >= store.size()) {
+                throw new GenesisException("Invalid task number!");
+            }
+            if (store.get(index).isComplete() != isComplete) {
+                recordOperation(OperationLog.completed(single(index), isComplete));
+            }
+            Task task = store.setComplete(index, isComplete);
+            then.run();
+            return task;
+        });
+    }
+
+    @Override
+    public String deleteTask(int index, Runnable then) throws GenesisException {
+        return atomically(() -> {
+            if (index < 0 || index >= store.size()) {
+                throw new GenesisException("Invalid task number!");
+            }
+            BitSet indices = new BitSet();
+            indices.set(index);
+            Task removedTask = delete(indices).get(0);
+            then.run();
+            return "Noted. I have removed the following task: \n" + removedTask.toString()
+                    + "\nNow you have " + store.size() + " tasks in the list.";
+        });
+    }
+
+    @Override
+    public int markTasks(BitSet indices) throws GenesisException {
+        return setCompletion(indices, true);
+    }
+
+    @Override
+    public int unmarkTasks(BitSet indices) throws GenesisException {
+        return setCompletion(indices, false);
+    }
+
+    private int setCompletion(BitSet indices, boolean isComplete) throws GenesisException {
+        return atomically(() -> {
+            if (indices.length() > store.size()) {
+                throw new GenesisException("Invalid task number!");
+            }
+            BitSet changed = new BitSet();
+            for (int i = indices.nextSetBit(0); i >= 0; i = indices.nextSetBit(i + 1)) {
+                if (store.get(i).isComplete() != isComplete) {
+                    changed.set(i);
+                    store.setComplete(i, isComplete);
+                }
+            }
+            if (!changed.isEmpty()) {
+                recordOperation(OperationLog.completed(changed, isComplete));
+            }
+            return indices.cardinality();
+        });
+    }
+
+    @Override
+    public int deleteTasks(BitSet indices) throws GenesisException {
+        return atomically(() -> {
+            if (indices.length() > store.size()) {
+                throw new GenesisException("Invalid task number!");
+            }
+            return delete(indices).size();
+        });
+    }
+
+    private List<Task> delete(BitSet indices) {
+        List<Task> removed = store.delete(indices);
+        if (fingerprints != null) {
+            for (Task task : removed) {
+                fingerprints.remove(fingerprint(task));
+            }
+        }
+        recordOperation(OperationLog.removed((BitSet) indices.clone(), removed));
+        return removed;
+    }
+
+    private HashSet<Long> getFingerprints() {
+        if (fingerprints == null) {
+            HashSet<Long> loaded = new HashSet<>();
+            store.forEach(task -> loaded.add(fingerprint(task)));
+            fingerprints = loaded;
+        }
+        return fingerprints;
+    }
+
+    /**
+     * Returns a 64-bit FNV-1a hash of the task's description, ignoring case and surrounding
+     * whitespace like the in-memory duplicate check.
+     */
+    private static long fingerprint(Task task) {
+        String key = task.getDescription().trim().toLowerCase(Locale.ROOT);
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
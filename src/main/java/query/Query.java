@@ -0,0 +1,311 @@
+package query;
+
+import command.Command;
+import deadline.Deadline;
+import event.Event;
+import exception.GenesisException;
+import task.Task;
+import taskmanager.TaskManager;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A structured query over the task list, e.g. "type:deadline done:false before:2024-09-01 text:report".
+ *
+ * Running a query first plans it: every index that could answer part of the query is asked for an
+ * estimate of how many tasks it would return, and the smallest one is used to fetch candidates.
+ * The candidates are then checked against every filter. When nothing narrower applies, the whole
+ * list is scanned.
+ */
+public class Query {
+    private static final String USAGE = "Please use filters like type:deadline done:false before:2024-09-01 "
+            + "after:2024-01-01 text:report, plus sort:date, sort:-id, limit:10 or explain";
+
+    private String type;
+    private Boolean isDone;
+    private long afterDay = Long.MIN_VALUE;
+    private long beforeDay = Long.MAX_VALUE;
+    private final List<String> texts = new ArrayList<>();
+    private String sortKey = "id";
+    private boolean isDescending;
+    private int limit = Integer.MAX_VALUE;
+    private boolean isExplain;
+
+    private Query() {
+    }
+
+    /**
+     * Parses a query command, whose words are the filters and options.
+     *
+     * @param command The query command.
+     * @return The parsed query.
+     * @throws GenesisException If a filter or option is not understood.
+     */
+    public static Query parse(Command command) throws GenesisException {
+        Query query = new Query();
+        for (String word : command.getWords()) {
+            if (word.equals("explain")) {
+                query.isExplain = true;
+                continue;
+            }
+            int colon = word.indexOf(':');
+            if (colon <= 0 || colon == word.length() - 1) {
+                throw new GenesisException(USAGE);
+            }
+            query.addFilter(word.substring(0, colon), word.substring(colon + 1));
+        }
+        return query;
+    }
+
+    private void addFilter(String key, String value) throws GenesisException {
+        switch (key) {
+        case "type":
+            if (!value.equals("todo") && !value.equals("deadline") && !value.equals("event")) {
+                throw new GenesisException("The type must be todo, deadline or event!");
+            }
+            type = value;
+            break;
+        case "done":
+            if (!value.equals("true") && !value.equals("false")) {
+                throw new GenesisException("done must be true or false!");
+            }
+            isDone = Boolean.valueOf(value);
+            break;
+        case "before":
+            beforeDay = parseDay(value);
+            break;
+        case "after":
+            afterDay = parseDay(value);
+            break;
+        case "text":
+            texts.add(value.toLowerCase(Locale.ROOT));
+            break;
+        case "sort":
+            isDescending = value.startsWith("-");
+            sortKey = isDescending ? value.substring(1) : value;
+            if (!sortKey.equals("id") && !sortKey.equals("date") && !sortKey.equals("text")) {
+                throw new GenesisException("You can sort by id, date or text, with a leading - to reverse!");
+            }
+            break;
+        case "limit":
+            try {
+                limit = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                limit = 0;
+            }
+            if (limit <= 0) {
+                throw new GenesisException("The limit must be a positive number!");
+            }
+            break;
+        default:
+            throw new GenesisException(USAGE);
+        }
+    }
+
+    private static long parseDay(String date) throws GenesisException {
+        try {
+            return LocalDate.parse(date).toEpochDay();
+        } catch (DateTimeParseException e) {
+            throw new GenesisException("Please enter dates in the yyyy-mm-dd format!");
+        }
+    }
+
+    public boolean isExplain() {
+        return this.isExplain;
+    }
+
+    /**
+     * Returns whether a task passes every filter. A date filter compares a deadline's due date, and
+     * the dates an event spans; todos have no date, so they never pass one.
+     *
+     * @param task The task to check.
+     * @return True if the task matches the query.
+     */
+    public boolean matches(Task task) {
+        if (type != null && !type.equals(typeOf(task))) {
+            return false;
+        }
+        if (isDone != null && isDone != task.isComplete()) {
+            return false;
+        }
+        if (afterDay != Long.MIN_VALUE || beforeDay != Long.MAX_VALUE) {
+            long first;
+            long last;
+            if (task instanceof Deadline) {
+                first = ((Deadline) task).getDueDay();
+                last = first;
+            } else if (task instanceof Event) {
+                first = ((Event) task).getStartDay();
+                last = ((Event) task).getEndDay();
+            } else {
+                return false;
+            }
+            if (first >= beforeDay || last <= afterDay) {
+                return false;
+            }
+        }
+        if (!texts.isEmpty()) {
+            String description = task.getDescription().toLowerCase(Locale.ROOT);
+            for (String text : texts) {
+                if (!description.contains(text)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Plans and runs the query.
+     *
+     * @param taskManager The task manager to query.
+     * @return The matching tasks, sorted and limited, with a description of the plan.
+     */
+    public Result run(TaskManager taskManager) {
+        int total = taskManager.size();
+        StringBuilder considered = new StringBuilder("scan ").append(total);
+        String path = "scan";
+        String term = null;
+        long cost = total;
+        for (String text : texts) {
+            int estimate = taskManager.estimateSearch(text);
+            considered.append(", text index for \"").append(text).append("\" ").append(estimate);
+            if (estimate < cost) {
+                path = "text";
+                term = text;
+                cost = estimate;
+            }
+        }
+        if ("event".equals(type)) {
+            int estimate = taskManager.getEventCount();
+            considered.append(", event index ").append(estimate);
+            if (estimate < cost) {
+                path = "events";
+                cost = estimate;
+            }
+        }
+        if ("deadline".equals(type) && Boolean.FALSE.equals(isDone)) {
+            int estimate = taskManager.getPendingDeadlineCount();
+            considered.append(", due-date index ").append(estimate);
+            if (estimate < cost) {
+                path = "deadlines";
+                cost = estimate;
+            }
+        }
+
+        Collection<? extends Task> candidates;
+        String description;
+        switch (path) {
+        case "text":
+            candidates = taskManager.search(term, true);
+            description = "text index for \"" + term + "\"";
+            break;
+        case "events":
+            candidates = taskManager.findEvents(dayOrMin(afterDay + 1), dayOrMax(beforeDay - 1));
+            description = "event index";
+            break;
+        case "deadlines":
+            candidates = beforeDay == Long.MAX_VALUE
+                    ? taskManager.nextDeadlines(Integer.MAX_VALUE)
+                    : taskManager.deadlinesDueBy(LocalDate.ofEpochDay(beforeDay - 1));
+            description = "due-date index";
+            break;
+        default:
+            candidates = taskManager.getTasks();
+            description = "scan";
+            break;
+        }
+
+        // A scan already visits tasks in id order, so with the default sort it can stop at the limit.
+        boolean isEarlyExit = path.equals("scan") && sortKey.equals("id") && !isDescending;
+        List<Task> matches = new ArrayList<>();
+        int examined = 0;
+        for (Task task : candidates) {
+            if (isEarlyExit && matches.size() >= limit) {
+                break;
+            }
+            examined++;
+            if (matches(task)) {
+                matches.add(task);
+            }
+        }
+        int matched = matches.size();
+        matches.sort(isDescending ? comparator().reversed() : comparator());
+        if (matches.size() > limit) {
+            matches = new ArrayList<>(matches.subList(0, limit));
+        }
+        String plan = "Plan: " + description + ", examined " + examined + " of " + total + " tasks, "
+                + matched + " matched.\nConsidered: " + considered + ".";
+        return new Result(matches, plan);
+    }
+
+    private static LocalDate dayOrMin(long day) {
+        return day <= LocalDate.MIN.toEpochDay() ? LocalDate.MIN : LocalDate.ofEpochDay(day);
+    }
+
+    private static LocalDate dayOrMax(long day) {
+        return day >= LocalDate.MAX.toEpochDay() ? LocalDate.MAX : LocalDate.ofEpochDay(day);
+    }
+
+    private Comparator<Task> comparator() {
+        switch (sortKey) {
+        case "date":
+            return Comparator.comparingLong(Query::dayOf).thenComparingLong(Task::getId);
+        case "text":
+            return Comparator.comparing((Task task) -> task.getDescription().toLowerCase(Locale.ROOT))
+                    .thenComparingLong(Task::getId);
+        default:
+            return Comparator.comparingLong(Task::getId);
+        }
+    }
+
+    /**
+     * Returns the day a task is sorted by: a deadline's due date or an event's start. Todos sort last.
+     */
+    private static long dayOf(Task task) {
+        if (task instanceof Deadline) {
+            return ((Deadline) task).getDueDay();
+        }
+        if (task instanceof Event) {
+            return ((Event) task).getStartDay();
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private static String typeOf(Task task) {
+        if (task instanceof Deadline) {
+            return "deadline";
+        }
+        if (task instanceof Event) {
+            return "event";
+        }
+        return "todo";
+    }
+
+    /**
+     * The tasks a query found, and how it found them.
+     */
+    public static class Result {
+        private final List<Task> tasks;
+        private final String plan;
+
+        private Result(List<Task> tasks, String plan) {
+            this.tasks = tasks;
+            this.plan = plan;
+        }
+
+        public List<Task> getTasks() {
+            return this.tasks;
+        }
+
+        public String getPlan() {
+            return this.plan;
+        }
+    }
+}
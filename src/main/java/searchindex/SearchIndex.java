@@ -0,0 +1,122 @@
+package searchindex;
+
+import task.Task;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * An inverted index from lower-cased description trigrams to the tasks containing them.
+ *
+ * A search only looks at the tasks in the smallest posting list among the search term's trigrams,
+ * so its cost grows with the number of likely matches rather than the size of the task list.
+ */
+public class SearchIndex {
+    private static final int GRAM_LENGTH = 3;
+
+    protected HashMap<String, Set<Task>> postings;
+    protected Set<Task> allTasks;
+
+    /**
+     * Constructs an empty SearchIndex.
+     */
+    public SearchIndex() {
+        this.postings = new HashMap<>();
+        this.allTasks = new HashSet<>();
+    }
+
+    /**
+     * Adds a task's description to the index.
+     *
+     * @param task The task to index.
+     */
+    public void add(Task task) {
+        allTasks.add(task);
+        for (String gram : grams(task.getDescription())) {
+            postings.computeIfAbsent(gram, key -> new HashSet<>()).add(task);
+        }
+    }
+
+    /**
+     * Removes a task from the index.
+     *
+     * @param task The task to remove.
+     */
+    public void remove(Task task) {
+        allTasks.remove(task);
+        for (String gram : grams(task.getDescription())) {
+            Set<Task> posting = postings.get(gram);
+            if (posting != null) {
+                posting.remove(task);
+                if (posting.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the tasks whose description contains the given term.
+     *
+     * @param term The text to look for.
+     * @param isCaseInsensitive If true, letter case is ignored when matching.
+     * @return The matching tasks, in no particular order.
+     */
+    public Set<Task> search(String term, boolean isCaseInsensitive) {
+        String lowerTerm = term.toLowerCase(Locale.ROOT);
+        Collection<Task> candidates = allTasks;
+        for (String gram : grams(term)) {
+            Set<Task> posting = postings.get(gram);
+            if (posting == null) {
+                return Collections.emptySet();
+            }
+            if (posting.size() < candidates.size()) {
+                candidates = posting;
+            }
+        }
+
+        Set<Task> matches = new HashSet<>();
+        for (Task task : candidates) {
+            String description = task.getDescription();
+            boolean isMatch = isCaseInsensitive
+                    ? description.toLowerCase(Locale.ROOT).contains(lowerTerm)
+                    : description.contains(term);
+            if (isMatch) {
+                matches.add(task);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Returns an upper bound on the number of tasks a search for the term would examine: the size of
+     * the smallest posting list among its trigrams, without searching.
+     *
+     * @param term The text to look for.
+     * @return The estimated number of candidates.
+     */
+    public int estimate(String term) {
+        int smallest = allTasks.size();
+        for (String gram : grams(term)) {
+            Set<Task> posting = postings.get(gram);
+            if (posting == null) {
+                return 0;
+            }
+            smallest = Math.min(smallest, posting.size());
+        }
+        return smallest;
+    }
+
+    private static Set<String> grams(String text) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= lower.length(); i++) {
+            grams.add(lower.substring(i, i + GRAM_LENGTH));
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,130 @@
+package server;
+
+import genesis.Genesis;
+import ui.Ui;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves one Genesis instance to many local clients over TCP or a Unix domain socket.
+ *
+ * Clients send the same commands as the GUI, one per line. Each response is sent back followed
+ * by an empty line. "bye" ends only the client's own session.
+ */
+public class GenesisServer {
+    public static final int DEFAULT_PORT = 4096;
+    private static final String UNIX_PREFIX = "unix:";
+
+    protected Genesis genesis;
+    protected SocketAddress address;
+
+    /**
+     * Constructs a GenesisServer for the given Genesis instance.
+     *
+     * @param genesis The Genesis instance shared by all sessions.
+     * @param address Where to listen, e.g. "4096" for a TCP port on localhost or "unix:/tmp/genesis.sock".
+     */
+    public GenesisServer(Genesis genesis, String address) {
+        this.genesis = genesis;
+        if (address.startsWith(UNIX_PREFIX)) {
+            this.address = UnixDomainSocketAddress.of(address.substring(UNIX_PREFIX.length()));
+        } else {
+            this.address = new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address));
+        }
+    }
+
+    /**
+     * Accepts connections until the process is stopped, running each session on its own thread.
+     *
+     * @throws IOException If the server socket cannot be opened.
+     */
+    public void serve() throws IOException {
+        boolean isUnix = address instanceof UnixDomainSocketAddress;
+        if (isUnix) {
+            Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+        }
+        ExecutorService sessions = newSessionExecutor();
+        try (ServerSocketChannel server = isUnix
+                ? ServerSocketChannel.open(StandardProtocolFamily.UNIX)
+                : ServerSocketChannel.open()) {
+            server.bind(address);
+            System.out.println("Genesis is listening on " + address);
+            while (true) {
+                SocketChannel client = server.accept();
+                sessions.submit(() -> runSession(client));
+            }
+        } finally {
+            sessions.shutdown();
+        }
+    }
+
+    /**
+     * Returns an executor that starts one virtual thread per session when the JDK supports them,
+     * and one platform thread per session otherwise.
+     */
+    private static ExecutorService newSessionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "genesis-session");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private void runSession(SocketChannel client) {
+        try (client;
+             BufferedReader in = new BufferedReader(
+                     new InputStreamReader(Channels.newInputStream(client), StandardCharsets.UTF_8));
+             BufferedWriter out = new BufferedWriter(
+                     new OutputStreamWriter(Channels.newOutputStream(client), StandardCharsets.UTF_8))) {
+            respond(out, genesis.initialise());
+            String input;
+            while ((input = in.readLine()) != null) {
+                respond(out, genesis.ui.handleInput(input, false));
+                if (Ui.isExit(input)) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Session ended: " + e.getMessage());
+        }
+    }
+
+    private static void respond(BufferedWriter out, String response) throws IOException {
+        String text = response == null ? "" : response.stripTrailing();
+        out.write(text);
+        out.write("\n\n");
+        out.flush();
+    }
+
+    /**
+     * Starts a server for the Genesis instance in the current data directory.
+     *
+     * @param args An optional address, a TCP port or "unix:PATH". Defaults to port 4096.
+     */
+    public static void main(String[] args) throws IOException {
+        String address = args.length > 0 ? args[0] : String.valueOf(DEFAULT_PORT);
+        new GenesisServer(new Genesis(), address).serve();
+    }
+}
@@ -0,0 +1,139 @@
+package snapshot;
+
+import task.Task;
+import taskcodec.TaskCodec;
+import taskmanager.TaskManager;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A point-in-time image of the task list in the versioned binary snapshot format.
+ *
+ * The file starts with a header (magic, version, journal generation, next task id, task count),
+ * followed by one record per task in the {@link TaskCodec} encoding.
+ */
+public class Snapshot {
+    public static final int MAGIC = 0x474E5342;
+    public static final short VERSION = 1;
+
+    protected final long generation;
+    protected final long nextId;
+    protected final List<Task> tasks;
+    protected final BitSet completed;
+
+    /**
+     * Constructs a Snapshot from already captured state.
+     *
+     * @param generation The first journal generation not folded into this snapshot.
+     * @param nextId The next id the TaskManager will hand out.
+     * @param tasks The tasks, in list order.
+     * @param completed The positions of completed tasks.
+     */
+    public Snapshot(long generation, long nextId, List<Task> tasks, BitSet completed) {
+        this.generation = generation;
+        this.nextId = nextId;
+        this.tasks = tasks;
+        this.completed = completed;
+    }
+
+    /**
+     * Captures the current contents of a TaskManager. Completion flags are copied so that later
+     * marks do not leak into a snapshot that is still being written.
+     *
+     * @param generation The first journal generation not folded into this snapshot.
+     * @param taskManager The TaskManager to capture.
+     * @return The captured snapshot.
+     */
+    public static Snapshot capture(long generation, TaskManager taskManager) {
+        List<Task> tasks = new ArrayList<>(taskManager.getTasks());
+        BitSet completed = new BitSet(tasks.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            if (tasks.get(i).isComplete()) {
+                completed.set(i);
+            }
+        }
+        return new Snapshot(generation, taskManager.getNextId(), tasks, completed);
+    }
+
+    public long getGeneration() {
+        return this.generation;
+    }
+
+    public long getNextId() {
+        return this.nextId;
+    }
+
+    /**
+     * Returns the tasks with their ids assigned and completion state applied.
+     *
+     * @return The tasks in list order.
+     */
+    public List<Task> getTasks() {
+        return this.tasks;
+    }
+
+    /**
+     * Encodes the snapshot to the given stream.
+     *
+     * @param out The stream to write to. It is not closed.
+     * @throws IOException If writing fails.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeLong(generation);
+        data.writeLong(nextId);
+        data.writeInt(tasks.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            TaskCodec.write(data, tasks.get(i), completed.get(i));
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads a snapshot file through a memory-mapped channel.
+     *
+     * @param path The snapshot file.
+     * @return The decoded snapshot.
+     * @throws IOException If the file cannot be read or is not a snapshot of a supported version.
+     */
+    public static Snapshot read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            if (buffer.remaining() < 26 || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a Genesis snapshot: " + path);
+            }
+            short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            long generation = buffer.getLong();
+            long nextId = buffer.getLong();
+            int count = buffer.getInt();
+            List<Task> tasks = new ArrayList<>(count);
+            BitSet completed = new BitSet(count);
+            for (int i = 0; i < count; i++) {
+                Task task = TaskCodec.read(buffer);
+                if (task.isComplete()) {
+                    completed.set(i);
+                }
+                tasks.add(task);
+            }
+            return new Snapshot(generation, nextId, tasks, completed);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt snapshot " + path + ": " + e.getMessage());
+        }
+    }
+}
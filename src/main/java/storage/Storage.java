@@ -1,66 +1,694 @@
 package storage;
 
+import archive.Archive;
+import command.Command;
 import commandparser.CommandParser;
-import ui.Ui;
+import exception.GenesisException;
+import metrics.Metrics;
+import snapshot.Snapshot;
 import task.Task;
+import taskfile.TaskFile;
+import ui.Ui;
 import taskmanager.TaskManager;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Handles loading tasks from and writing tasks to the data directory.
+ *
+ * Tasks are kept in a binary snapshot (see {@link Snapshot}). In journal mode, every mutation is
+ * appended to a log file as a single command record instead of rewriting the snapshot. Once the log
+ * grows past a threshold, it is folded into a new snapshot on a background thread. The older
+ * command-text task file is still read when no snapshot exists yet.
+ *
+ * Writes are done behind the caller's back: recording a mutation only queues it, and a writer
+ * thread flushes everything queued within {@code maxDelayMillis} in a single write. Call
+ * {@link #flush()} when the mutations so far must be on disk, e.g. before exiting.
+ */
 public class Storage {
+    private static final String JOURNAL_PREFIX = "tasks.";
+    private static final String JOURNAL_SUFFIX = ".log";
+    private static final long DEFAULT_MAX_DELAY_MILLIS = 20;
+
     protected TaskManager taskManager;
     protected CommandParser commandParser;
+    protected Metrics metrics = new Metrics(null, null);
+
+    private final Path dataDirectory;
+    private final Path snapshotFile;
+    private final Path textFile;
+    private final Archive archive;
+    private final boolean isJournalMode;
+    private final int syncEvery;
+    private final int compactThreshold;
+    private final long maxDelayMillis;
+    private final ScheduledExecutorService writer;
+    private final ExecutorService compactor;
+
+    // Queued by callers, guarded by this.
+    private final List<PendingWrite> pending = new ArrayList<>();
+    private List<String> batchRecords;
+    private long generation;
+    private int recordsInJournal;
+    private int queueDepth;
+    private boolean isDirty;
+    private boolean isDrainScheduled;
+    private boolean isReplaying;
+    private boolean isCompacting;
+
+    // Only touched on the writer thread once loading is done.
+    private FileChannel journal;
+    private long journalGeneration;
+    private int recordsSinceSync;
+    private long writtenGeneration = -1;
 
     /**
-     * Constructs a Storage object with the specified TaskManager.
+     * Constructs a Storage object with the specified TaskManager, using journal mode
+     * with the default sync and compaction settings.
      *
      * @param taskManager The TaskManager associated with this storage.
      */
-
     public Storage(TaskManager taskManager) {
+        this(taskManager, Paths.get("data"), true, 32, 1000, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    /**
+     * Constructs a Storage object with the specified TaskManager and persistence settings,
+     * flushing queued writes after the default delay.
+     *
+     * @param taskManager The TaskManager associated with this storage.
+     * @param dataDirectory The directory holding the snapshot, journals and task file.
+     * @param isJournalMode If true, mutations are appended to a log instead of rewriting the task file.
+     * @param syncEvery Number of journal records between fsyncs, or 0 to leave syncing to the OS.
+     * @param compactThreshold Number of journal records after which the log is folded into a snapshot.
+     */
+    public Storage(TaskManager taskManager, Path dataDirectory, boolean isJournalMode, int syncEvery,
+            int compactThreshold) {
+        this(taskManager, dataDirectory, isJournalMode, syncEvery, compactThreshold, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    /**
+     * Constructs a Storage object with the specified TaskManager and persistence settings.
+     *
+     * @param taskManager The TaskManager associated with this storage.
+     * @param dataDirectory The directory holding the snapshot, journals and task file.
+     * @param isJournalMode If true, mutations are appended to a log instead of rewriting the task file.
+     * @param syncEvery Number of journal records between fsyncs, or 0 to leave syncing to the OS.
+     * @param compactThreshold Number of journal records after which the log is folded into a snapshot.
+     * @param maxDelayMillis How long a recorded mutation may wait before it is written out.
+     */
+    public Storage(TaskManager taskManager, Path dataDirectory, boolean isJournalMode, int syncEvery,
+            int compactThreshold, long maxDelayMillis) {
+        this(taskManager, dataDirectory, isJournalMode, syncEvery, compactThreshold, maxDelayMillis, true);
+    }
+
+    /**
+     * Constructs a Storage object for a subclass that persists tasks its own way, and so overrides
+     * recording, flushing and writing tasks. No writer or compactor thread is set up; loading still
+     * reads the snapshot, journals or task file in the data directory.
+     *
+     * @param taskManager The TaskManager associated with this storage.
+     * @param dataDirectory The directory holding the snapshot, journals and task file.
+     */
+    protected Storage(TaskManager taskManager, Path dataDirectory) {
+        this(taskManager, dataDirectory, true, 0, Integer.MAX_VALUE, 0, false);
+    }
+
+    private Storage(TaskManager taskManager, Path dataDirectory, boolean isJournalMode, int syncEvery,
+            int compactThreshold, long maxDelayMillis, boolean hasWriter) {
+        assert compactThreshold > 0 : "Compaction threshold should be positive!";
+        assert maxDelayMillis >= 0 : "Delay cannot be negative!";
         this.taskManager = taskManager;
+        this.dataDirectory = dataDirectory;
+        this.snapshotFile = dataDirectory.resolve("tasks.bin");
+        this.textFile = dataDirectory.resolve("tasks.txt");
+        this.archive = new Archive(dataDirectory.resolve("archive"));
+        this.isJournalMode = isJournalMode;
+        this.syncEvery = syncEvery;
+        this.compactThreshold = compactThreshold;
+        this.maxDelayMillis = maxDelayMillis;
+        if (!hasWriter) {
+            this.writer = null;
+            this.compactor = null;
+            return;
+        }
+        this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "genesis-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "genesis-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public Path getDataDirectory() {
+        return this.dataDirectory;
     }
 
     /**
-     * Loads tasks from a file and populates the TaskManager.
+     * Returns the archive of completed tasks kept alongside the task list.
+     *
+     * @return The archive.
+     */
+    public Archive getArchive() {
+        return this.archive;
+    }
+
+    /**
+     * Sets where storage reports how long recording takes, the bytes it writes and its failures.
+     *
+     * @param metrics The metrics to report to.
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Loads tasks from the snapshot file, then replays any journal records written after it.
+     *
+     * If there is no snapshot yet, the command-text task file is parsed straight into task objects
+     * instead, in parallel chunks (see {@link TaskFile}). Either way the tasks are handed to the TaskManager in batches,
+     * with any other lines of the task file replayed in between in file order, so loading never writes to disk.
      *
      * @param commandParser The command parser used to handle commands.
      * @param ui The UI component to handle user inputs.
      */
-    public void loadTasks(CommandParser commandParser, Ui ui) {
-        File f = new File("data/tasks.txt");
-        if (f.exists()) {
-            try (Scanner s = new Scanner(f)) {
+    public synchronized void loadTasks(CommandParser commandParser, Ui ui) {
+        this.commandParser = commandParser;
+        this.isReplaying = true;
+        try {
+            if (Files.exists(snapshotFile)) {
+                loadSnapshot();
+            } else if (Files.exists(textFile)) {
+                loadTextFile(ui);
+            } else {
+                System.out.println("Error. Data file does not exist!");
+            }
+            replayJournals(ui);
+        } finally {
+            this.isReplaying = false;
+            this.journalGeneration = generation;
+        }
+    }
+
+    private void loadSnapshot() {
+        try {
+            Snapshot snapshot = Snapshot.read(snapshotFile);
+            generation = snapshot.getGeneration();
+            this.taskManager.loadTasks(snapshot.getTasks());
+            this.taskManager.reserveIds(snapshot.getNextId());
+        } catch (IOException e) {
+            System.out.println("Error loading tasks from file: " + e.getMessage());
+        }
+    }
+
+    private void loadTextFile(Ui ui) {
+        TaskFile file;
+        try {
+            file = TaskFile.read(textFile);
+        } catch (IOException e) {
+            System.out.println("Error loading tasks from file: " + e.getMessage());
+            return;
+        }
+        for (String error : file.getErrors()) {
+            System.out.println(error);
+        }
+        generation = file.getGeneration();
+        List<Task> tasks = file.getTasks();
+        List<String> otherLines = file.getOtherLines();
+        List<Integer> positions = file.getOtherLinePositions();
+        int loaded = 0;
+        for (int i = 0; i < otherLines.size(); i++) {
+            int position = positions.get(i);
+            if (position > loaded) {
+                this.taskManager.loadTasks(tasks.subList(loaded, position));
+                loaded = position;
+            }
+            replay(ui, otherLines.get(i));
+        }
+        this.taskManager.loadTasks(tasks.subList(loaded, tasks.size()));
+    }
+
+    /**
+     * Replays every journal at or after the snapshot's generation, oldest first, and discards
+     * journals that the snapshot already covers.
+     */
+    private void replayJournals(Ui ui) {
+        TreeMap<Long, Path> journals = findJournals();
+        for (var entry : journals.entrySet()) {
+            if (entry.getKey() < generation) {
+                deleteQuietly(entry.getValue());
+                continue;
+            }
+            try (Scanner s = new Scanner(entry.getValue().toFile(), StandardCharsets.UTF_8)) {
                 while (s.hasNext()) {
-                    ui.handleInput(s.nextLine(), true);
+                    replay(ui, s.nextLine());
+                    recordsInJournal++;
                 }
-
             } catch (IOException e) {
-                System.out.println("Error loading tasks from file: " + e.getMessage());
+                System.out.println("Error replaying journal: " + e.getMessage());
+            }
+            generation = entry.getKey();
+        }
+    }
+
+    /**
+     * Applies one stored command. Undoing a delete is recorded as a restore, which users cannot
+     * type, so it is handed straight to the command parser.
+     */
+    private void replay(Ui ui, String line) {
+        Command command = Command.parse(line);
+        if (!command.getKeyword().equals("restore")) {
+            ui.handleInput(line, true);
+            return;
+        }
+        try {
+            this.commandParser.handleRestore(command);
+        } catch (GenesisException e) {
+            System.out.println("Skipping invalid record \"" + line + "\": " + e.getMessage());
+        }
+    }
+
+    private TreeMap<Long, Path> findJournals() {
+        TreeMap<Long, Path> journals = new TreeMap<>();
+        File[] files = dataDirectory.toFile().listFiles();
+        if (files == null) {
+            return journals;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.startsWith(JOURNAL_PREFIX) || !name.endsWith(JOURNAL_SUFFIX)) {
+                continue;
             }
+            try {
+                String number = name.substring(JOURNAL_PREFIX.length(), name.length() - JOURNAL_SUFFIX.length());
+                journals.put(Long.parseLong(number), file.toPath());
+            } catch (NumberFormatException e) {
+                // Not one of our journals.
+            }
+        }
+        return journals;
+    }
+
+    /**
+     * Queues a successfully applied command to be persisted. In journal mode the command will be
+     * appended to the log; otherwise the whole task file will be rewritten. Nothing is written while
+     * replaying.
+     *
+     * Callers hold the TaskManager lock, so commands are queued in the order they were applied.
+     *
+     * @param command The command text to record.
+     */
+    public void record(String command) {
+        if (!metrics.isEnabled()) {
+            enqueue(command);
+            return;
+        }
+        long start = System.nanoTime();
+        enqueue(command);
+        metrics.recordPersist(System.nanoTime() - start);
+    }
+
+    private synchronized void enqueue(String command) {
+        if (isReplaying) {
+            return;
+        }
+        if (batchRecords != null) {
+            batchRecords.add(command);
+            return;
+        }
+        if (isJournalMode) {
+            pending.add(new PendingWrite(command, null, false));
+            recordsInJournal++;
+            maybeCompact();
         } else {
-            System.out.println("Error. Data file does not exist!");
+            isDirty = true;
         }
+        queueDepth++;
+        scheduleDrain();
     }
 
     /**
-     * Writes the current list of tasks to a file.
+     * Starts holding back recorded commands until the batch is committed or aborted.
+     * Callers hold the TaskManager lock for the whole batch.
      */
-    public void writeTasks() {
-        try (FileWriter fw = new FileWriter("data/tasks.txt")) {
-            ArrayList<Task> tasks = this.taskManager.getTasks();
-            for (Task task: tasks) {
-                fw.write(task.getInput() + System.lineSeparator());
+    public synchronized void beginBatch() {
+        batchRecords = new ArrayList<>();
+    }
+
+    /**
+     * Queues every command recorded since {@link #beginBatch()} as a single write. A compaction due
+     * during the batch waits until all of its records are queued, so the snapshot never splits it.
+     */
+    public synchronized void commitBatch() {
+        List<String> records = batchRecords;
+        batchRecords = null;
+        if (records == null || records.isEmpty()) {
+            return;
+        }
+        if (isJournalMode) {
+            for (String command : records) {
+                pending.add(new PendingWrite(command, null, false));
+            }
+            recordsInJournal += records.size();
+            maybeCompact();
+        } else {
+            isDirty = true;
+        }
+        queueDepth += records.size();
+        scheduleDrain();
+    }
+
+    /**
+     * Drops every command recorded since {@link #beginBatch()}, after the batch was rolled back.
+     */
+    public synchronized void abortBatch() {
+        batchRecords = null;
+    }
+
+    /**
+     * Returns the number of recorded mutations that have not been written to disk yet.
+     *
+     * @return The write queue depth.
+     */
+    public synchronized int getQueueDepth() {
+        return this.queueDepth;
+    }
+
+    /**
+     * Starts a new journal generation and folds everything before it into a snapshot
+     * on the compactor thread. The task list is captured here so the snapshot matches
+     * exactly the records queued before it.
+     */
+    private void maybeCompact() {
+        if (recordsInJournal < compactThreshold || isCompacting) {
+            return;
+        }
+        generation++;
+        pending.add(new PendingWrite(null, Snapshot.capture(generation, this.taskManager), true));
+        recordsInJournal = 0;
+        isCompacting = true;
+    }
+
+    private void scheduleDrain() {
+        if (isDrainScheduled || writer == null) {
+            return;
+        }
+        try {
+            writer.schedule(() -> drain(false), maxDelayMillis, TimeUnit.MILLISECONDS);
+            isDrainScheduled = true;
+        } catch (RejectedExecutionException e) {
+            System.out.println("Error writing to journal: storage is closed");
+        }
+    }
+
+    /**
+     * Writes out everything queued so far on the writer thread. Consecutive commands are
+     * appended to the journal in one write; queued snapshots rotate the journal in between.
+     *
+     * @param isBarrier If true, the journal is synced to disk whatever {@code syncEvery} says.
+     */
+    private void drain(boolean isBarrier) {
+        List<PendingWrite> batch;
+        boolean isRewrite;
+        int drained;
+        synchronized (this) {
+            batch = new ArrayList<>(pending);
+            pending.clear();
+            isRewrite = isDirty;
+            isDirty = false;
+            drained = queueDepth;
+            isDrainScheduled = false;
+        }
+        long start = System.nanoTime();
+        long bytes = 0;
+        try {
+            StringBuilder records = new StringBuilder();
+            for (PendingWrite write : batch) {
+                if (write.command != null) {
+                    records.append(write.command).append('\n');
+                    recordsSinceSync++;
+                    continue;
+                }
+                bytes += append(records);
+                rotate(write.snapshot, write.isCompaction);
+            }
+            bytes += append(records);
+            if (isRewrite) {
+                rewrite();
+            }
+            boolean isSyncDue = syncEvery > 0 && recordsSinceSync >= syncEvery;
+            if (journal != null && (isBarrier || isSyncDue)) {
+                journal.force(false);
+                recordsSinceSync = 0;
+            }
+            if (bytes > 0) {
+                metrics.recordFlush(bytes, System.nanoTime() - start);
+            }
+        } catch (IOException e) {
+            metrics.recordStorageError();
+            System.out.println("Error writing to journal: " + e.getMessage());
+        } finally {
+            synchronized (this) {
+                queueDepth -= drained;
+            }
+        }
+    }
+
+    private int append(StringBuilder records) throws IOException {
+        if (records.length() == 0) {
+            return 0;
+        }
+        if (journal == null) {
+            openJournal(journalGeneration);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(records.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            journal.write(buffer);
+        }
+        records.setLength(0);
+        return buffer.capacity();
+    }
+
+    /**
+     * Switches to the journal generation of a snapshot and writes the snapshot, either right here
+     * or, for compactions, on the compactor thread so that later records are not held up.
+     */
+    private void rotate(Snapshot snapshot, boolean isCompaction) throws IOException {
+        long nextGeneration = snapshot.getGeneration();
+        if (isJournalMode) {
+            openJournal(nextGeneration);
+        }
+        journalGeneration = nextGeneration;
+        if (!isCompaction) {
+            writeSnapshot(snapshot);
+            deleteJournalsBefore(nextGeneration);
+            return;
+        }
+        compactor.submit(() -> {
+            try {
+                writeSnapshot(snapshot);
+                deleteJournalsBefore(nextGeneration);
+            } catch (IOException e) {
+                metrics.recordStorageError();
+                System.out.println("Error compacting journal: " + e.getMessage());
+            } finally {
+                synchronized (this) {
+                    isCompacting = false;
+                }
+            }
+        });
+    }
+
+    /**
+     * Rewrites the task file from the current task list, for storage that is not in journal mode.
+     */
+    private void rewrite() throws IOException {
+        Snapshot snapshot;
+        try {
+            snapshot = this.taskManager.atomically(() -> {
+                synchronized (this) {
+                    generation++;
+                    return Snapshot.capture(generation, this.taskManager);
+                }
+            });
+        } catch (GenesisException e) {
+            throw new IOException(e.getMessage());
+        }
+        rotate(snapshot, false);
+    }
+
+    private void openJournal(long journalGeneration) throws IOException {
+        closeJournal();
+        Files.createDirectories(dataDirectory);
+        Path path = dataDirectory.resolve(JOURNAL_PREFIX + journalGeneration + JOURNAL_SUFFIX);
+        journal = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        this.journalGeneration = journalGeneration;
+    }
+
+    private void closeJournal() throws IOException {
+        if (journal != null) {
+            journal.force(false);
+            journal.close();
+            journal = null;
+            recordsSinceSync = 0;
+        }
+    }
+
+    /**
+     * Writes the snapshot to a temporary file and atomically moves it over the task file,
+     * so a crash never leaves a half-written snapshot behind. A snapshot older than the one
+     * already on disk is dropped.
+     */
+    private void writeSnapshot(Snapshot snapshot) throws IOException {
+        synchronized (snapshotFile) {
+            if (snapshot.getGeneration() < writtenGeneration) {
+                return;
+            }
+            long start = System.nanoTime();
+            Files.createDirectories(dataDirectory);
+            Path temp = dataDirectory.resolve("tasks.bin.tmp");
+            try (FileOutputStream out = new FileOutputStream(temp.toFile());
+                 BufferedOutputStream buffered = new BufferedOutputStream(out, 1 << 16)) {
+                snapshot.writeTo(buffered);
+                buffered.flush();
+                out.getFD().sync();
             }
-            fw.close();
+            long bytes = Files.size(temp);
+            Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            metrics.recordFlush(bytes, System.nanoTime() - start);
+            writtenGeneration = snapshot.getGeneration();
+        }
+    }
+
+    private void deleteJournalsBefore(long journalGeneration) {
+        for (var entry : findJournals().headMap(journalGeneration).entrySet()) {
+            deleteQuietly(entry.getValue());
+        }
+    }
 
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
         } catch (IOException e) {
-            System.out.println("File does not exist!");
+            System.out.println("Error deleting old journal: " + e.getMessage());
         }
+    }
 
+    /**
+     * Writes the current list of tasks to the task file, folding in any journal records, and waits
+     * until it is on disk.
+     *
+     * The TaskManager is locked before this Storage, the same order as when a command is applied and
+     * then recorded, so the two can never deadlock.
+     */
+    public void writeTasks() {
+        try {
+            this.taskManager.atomically(() -> {
+                queueSnapshot();
+                return null;
+            });
+        } catch (GenesisException e) {
+            System.out.println(e.getMessage());
+        }
+        flush();
+    }
+
+    private synchronized void queueSnapshot() {
+        generation++;
+        pending.add(new PendingWrite(null, Snapshot.capture(generation, this.taskManager), false));
+        recordsInJournal = 0;
+        isDirty = false;
+        scheduleDrain();
+    }
+
+    /**
+     * Blocks until every mutation recorded so far has been written and synced to disk.
+     * Must not be called while holding the TaskManager lock.
+     */
+    public void flush() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.submit(() -> drain(true)).get();
+        } catch (RejectedExecutionException e) {
+            // Already closed, and closing flushed everything.
+        } catch (ExecutionException e) {
+            metrics.recordStorageError();
+            System.out.println("Error writing to journal: " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Flushes queued writes, syncs the journal to disk and waits for any running compaction to finish.
+     */
+    public void close() {
+        if (writer == null) {
+            return;
+        }
+        flush();
+        try {
+            writer.submit(() -> {
+                try {
+                    closeJournal();
+                } catch (IOException e) {
+                    System.out.println("Error closing journal: " + e.getMessage());
+                }
+            }).get();
+        } catch (RejectedExecutionException | ExecutionException e) {
+            // Already closed.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer.shutdown();
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A queued command record, or a snapshot to switch the journal over to.
+     */
+    private static class PendingWrite {
+        private final String command;
+        private final Snapshot snapshot;
+        private final boolean isCompaction;
+
+        private PendingWrite(String command, Snapshot snapshot, boolean isCompaction) {
+            this.command = command;
+            this.snapshot = snapshot;
+            this.isCompaction = isCompaction;
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,41 +1,100 @@
 package task;
 
+import java.time.format.DateTimeFormatter;
+
 public class Task {
+    protected static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MMM d yyyy");
 
+    protected long id;
     protected String description;
-    protected boolean isComplete;
+    protected volatile boolean isComplete;
+
+    private static volatile boolean isRenderingCached;
 
-    protected String input;
+    private volatile Rendering rendering;
 
     /**
-     * Constructs a Task with the specified description and input.
+     * Constructs a Task with the specified description.
      *
      * @param description The description of the task.
-     * @param input The input used to create the task.
      */
 
-    public Task (String description, String input) {
+    public Task (String description) {
         this.description = description;
         this.isComplete = false;
-        this.input = input;
     }
     /**
-     * Returns the original input used to create the task.
+     * Returns a command that would create the task. It is rebuilt from the task's fields each time
+     * rather than kept, so it may differ from what was typed in spacing.
      *
      * @return The input string of the task.
      */
     public String getInput() {
-        return this.input;
+        return this.description;
     }
 
     public String getDescription() { return this.description;}
+
     /**
-     * Returns a string representation of the task.
+     * Returns the stable id of the task, or 0 if it has not been added to a TaskManager yet.
+     *
+     * @return The id of the task.
+     */
+    public long getId() {
+        return this.id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    /**
+     * Returns whether the task has been marked as complete.
+     *
+     * @return True if the task is complete.
+     */
+    public boolean isComplete() {
+        return this.isComplete;
+    }
+    /**
+     * Sets whether tasks keep their string representation once built. Caching saves rebuilding it
+     * on every list, but every task listed then holds on to its string for the rest of the session.
+     * Off unless turned on; Genesis turns it on for tasks kept in memory.
+     *
+     * @param isCached True to cache string representations.
+     */
+    public static void setRenderingCached(boolean isCached) {
+        isRenderingCached = isCached;
+    }
+
+    /**
+     * Returns a string representation of the task. If caching is on, the string is built once and
+     * reused until the task is marked or unmarked. Reading it takes no lock: the cached string
+     * remembers which state it shows, and is rebuilt if that is no longer the task's state.
      *
      * @return The string representation of the task.
      */
     @Override
     public String toString() {
+        boolean isCompleteNow = this.isComplete;
+        if (!isRenderingCached) {
+            return render(isCompleteNow);
+        }
+        Rendering cached = this.rendering;
+        if (cached == null || cached.isComplete != isCompleteNow) {
+            cached = new Rendering(isCompleteNow, render(isCompleteNow));
+            this.rendering = cached;
+        }
+        return cached.text;
+    }
+
+    /**
+     * Builds the string representation of the task. Subclasses add their type and dates around it.
+     *
+     * @param isComplete Whether to show the task as complete.
+     * @return The string representation of the task.
+     */
+    protected String render(boolean isComplete) {
         String marked;
         if (isComplete) {
             marked = "[X] ";
@@ -57,4 +116,17 @@ public class Task {
     public void unmark() {
         this.isComplete = false;
     }
-}
\ No newline at end of file
+
+    /**
+     * A cached string representation and the completion state it shows.
+     */
+    private static class Rendering {
+        private final boolean isComplete;
+        private final String text;
+
+        private Rendering(boolean isComplete, String text) {
+            this.isComplete = isComplete;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package taskcodec;
+
+import deadline.Deadline;
+import event.Event;
+import task.Task;
+import todo.Todo;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * The binary encoding of a single task, shared by the snapshot file and the paged task store.
+ *
+ * A record is a type tag carrying the completion flag, the stable task id, the task's dates as
+ * epoch days and its description as length-prefixed UTF-8. Ids, dates and lengths are written as
+ * variable-length integers, so a typical record costs only a few bytes on top of its description.
+ */
+public class TaskCodec {
+    private static final byte TODO = 'T';
+    private static final byte DEADLINE = 'D';
+    private static final byte EVENT = 'E';
+    private static final int COMPLETE = 0x80;
+
+    private TaskCodec() {
+    }
+
+    /**
+     * Writes one task record.
+     *
+     * @param out The output to write to.
+     * @param task The task.
+     * @param isComplete Whether to record the task as complete, which may differ from its current state.
+     * @throws IOException If writing fails.
+     */
+    public static void write(DataOutput out, Task task, boolean isComplete) throws IOException {
+        int flag = isComplete ? COMPLETE : 0;
+        if (task instanceof Deadline) {
+            out.writeByte(DEADLINE | flag);
+        } else if (task instanceof Event) {
+            out.writeByte(EVENT | flag);
+        } else {
+            out.writeByte(TODO | flag);
+        }
+        writeVarLong(out, task.getId());
+        if (task instanceof Deadline) {
+            writeVarLong(out, zigZag(((Deadline) task).getDueDay()));
+        } else if (task instanceof Event) {
+            writeVarLong(out, zigZag(((Event) task).getStartDay()));
+            writeVarLong(out, zigZag(((Event) task).getEndDay()));
+        }
+        byte[] description = task.getDescription().getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, description.length);
+        out.write(description);
+    }
+
+    /**
+     * Reads one task record, with its id set and its completion applied.
+     *
+     * @param buffer The buffer, positioned at the start of the record.
+     * @return The task.
+     * @throws IOException If the record has an unknown type.
+     */
+    public static Task read(ByteBuffer buffer) throws IOException {
+        int tag = buffer.get() & 0xFF;
+        int type = tag & ~COMPLETE;
+        long id = readVarLong(buffer);
+        LocalDate first = null;
+        LocalDate second = null;
+        if (type == DEADLINE || type == EVENT) {
+            first = LocalDate.ofEpochDay(unZigZag(readVarLong(buffer)));
+        }
+        if (type == EVENT) {
+            second = LocalDate.ofEpochDay(unZigZag(readVarLong(buffer)));
+        }
+        byte[] bytes = new byte[(int) readVarLong(buffer)];
+        buffer.get(bytes);
+        String description = new String(bytes, StandardCharsets.UTF_8);
+
+        Task task;
+        if (type == DEADLINE) {
+            task = new Deadline(description, first);
+        } else if (type == EVENT) {
+            task = new Event(description, first, second);
+        } else if (type == TODO) {
+            task = new Todo(description);
+        } else {
+            throw new IOException("Unknown task type " + type);
+        }
+        task.setId(id);
+        if ((tag & COMPLETE) != 0) {
+            task.mark();
+        }
+        return task;
+    }
+
+    /**
+     * Returns how many bytes the task's record takes up, without encoding it.
+     *
+     * @param task The task.
+     * @return The record length in bytes.
+     */
+    public static int length(Task task) {
+        int length = 1 + varLongLength(task.getId());
+        if (task instanceof Deadline) {
+            length += varLongLength(zigZag(((Deadline) task).getDueDay()));
+        } else if (task instanceof Event) {
+            length += varLongLength(zigZag(((Event) task).getStartDay()));
+            length += varLongLength(zigZag(((Event) task).getEndDay()));
+        }
+        int description = utf8Length(task.getDescription());
+        return length + varLongLength(description) + description;
+    }
+
+    private static int utf8Length(String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                // A lone surrogate is encoded as '?'.
+                length += Character.isSurrogate(c) ? 1 : 3;
+            }
+        }
+        return length;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int varLongLength(long value) {
+        int length = 1;
+        while ((value & ~0x7FL) != 0) {
+            length++;
+            value >>>= 7;
+        }
+        return length;
+    }
+
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,236 @@
+package taskfile;
+
+import command.Command;
+import commandparser.CommandParser;
+import exception.GenesisException;
+import task.Task;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The contents of a command-text task file, with one command per line.
+ *
+ * The file is memory-mapped and cut into chunks of about {@value #CHUNK_SIZE} bytes at line
+ * boundaries. The chunks are parsed in parallel on the common fork-join pool, straight into task
+ * objects, and the results are kept in chunk order, so the tasks come out in file order.
+ */
+public class TaskFile {
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final String SNAPSHOT_HEADER = "#snapshot ";
+
+    protected final List<Task> tasks;
+    protected final List<String> otherLines;
+    protected final List<Integer> otherLinePositions;
+    protected final List<String> errors;
+    protected long generation;
+
+    private TaskFile() {
+        this.tasks = new ArrayList<>();
+        this.otherLines = new ArrayList<>();
+        this.otherLinePositions = new ArrayList<>();
+        this.errors = new ArrayList<>();
+    }
+
+    /**
+     * Returns the parsed todo, deadline and event tasks, in file order. Duplicates are not removed.
+     *
+     * @return The tasks.
+     */
+    public List<Task> getTasks() {
+        return this.tasks;
+    }
+
+    /**
+     * Returns the lines that are not tasks, such as mark commands, to be replayed in between
+     * loading the tasks (see {@link #getOtherLinePositions()}).
+     *
+     * @return The other lines, in file order.
+     */
+    public List<String> getOtherLines() {
+        return this.otherLines;
+    }
+
+    /**
+     * Returns, for each of the other lines, how many tasks come before it in the file. A line must
+     * be replayed after exactly those tasks are loaded, since e.g. "mark 1" or "delete 1" refer to
+     * the list as it is at that point.
+     *
+     * @return The number of tasks before each other line, in file order.
+     */
+    public List<Integer> getOtherLinePositions() {
+        return this.otherLinePositions;
+    }
+
+    /**
+     * Returns a message for every task line that could not be parsed.
+     *
+     * @return The messages, in file order.
+     */
+    public List<String> getErrors() {
+        return this.errors;
+    }
+
+    /**
+     * Returns the journal generation named in the file's snapshot header.
+     *
+     * @return The generation, or 0 if the file has no header.
+     */
+    public long getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * Reads and parses a task file.
+     *
+     * @param path The task file.
+     * @return The parsed contents.
+     * @throws IOException If the file cannot be read.
+     */
+    public static TaskFile read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Task file is too large to load: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            List<Integer> bounds = findChunks(buffer);
+            if (bounds.size() < 2) {
+                return new TaskFile();
+            }
+            TaskFile[] chunks = new TaskFile[bounds.size() - 1];
+            if (chunks.length == 1) {
+                chunks[0] = parseChunk(buffer, 0, (int) size);
+            } else {
+                ForkJoinPool.commonPool().invoke(new ParseChunks(buffer, bounds, chunks, 0, chunks.length));
+            }
+            return merge(chunks);
+        }
+    }
+
+    /**
+     * Returns the chunk boundaries: 0, then the position after the first newline at or past every
+     * {@value #CHUNK_SIZE} bytes, then the end of the file.
+     */
+    private static List<Integer> findChunks(ByteBuffer buffer) {
+        List<Integer> bounds = new ArrayList<>();
+        bounds.add(0);
+        int position = 0;
+        int end = buffer.limit();
+        while (end - position > CHUNK_SIZE) {
+            int next = position + CHUNK_SIZE;
+            while (next < end && buffer.get(next) != '\n') {
+                next++;
+            }
+            if (next >= end) {
+                break;
+            }
+            position = next + 1;
+            bounds.add(position);
+        }
+        if (bounds.get(bounds.size() - 1) != end) {
+            bounds.add(end);
+        }
+        return bounds;
+    }
+
+    private static TaskFile parseChunk(ByteBuffer buffer, int from, int to) {
+        TaskFile chunk = new TaskFile();
+        String text = StandardCharsets.UTF_8.decode(buffer.slice(from, to - from)).toString();
+        int start = 0;
+        while (start < text.length()) {
+            int newline = text.indexOf('\n', start);
+            int end = newline < 0 ? text.length() : newline;
+            int lineEnd = end > start && text.charAt(end - 1) == '\r' ? end - 1 : end;
+            chunk.addLine(text.substring(start, lineEnd));
+            start = end + 1;
+        }
+        return chunk;
+    }
+
+    private void addLine(String line) {
+        if (line.startsWith(SNAPSHOT_HEADER)) {
+            generation = Long.parseLong(line.substring(SNAPSHOT_HEADER.length()).trim());
+            return;
+        }
+        Command command = Command.parse(line);
+        String keyword = command.getKeyword();
+        if (keyword.equals("todo") || keyword.equals("deadline") || keyword.equals("event")) {
+            try {
+                tasks.add(CommandParser.parseTask(command));
+            } catch (GenesisException e) {
+                errors.add("Skipping invalid task \"" + line + "\": " + e.getMessage());
+            }
+        } else if (!line.isBlank()) {
+            otherLines.add(line);
+            otherLinePositions.add(tasks.size());
+        }
+    }
+
+    private static TaskFile merge(TaskFile[] chunks) {
+        if (chunks.length == 1) {
+            return chunks[0];
+        }
+        TaskFile merged = new TaskFile();
+        int taskCount = 0;
+        for (TaskFile chunk : chunks) {
+            taskCount += chunk.tasks.size();
+        }
+        ((ArrayList<Task>) merged.tasks).ensureCapacity(taskCount);
+        for (TaskFile chunk : chunks) {
+            for (int position : chunk.otherLinePositions) {
+                merged.otherLinePositions.add(merged.tasks.size() + position);
+            }
+            merged.tasks.addAll(chunk.tasks);
+            merged.otherLines.addAll(chunk.otherLines);
+            merged.errors.addAll(chunk.errors);
+            if (chunk.generation != 0) {
+                merged.generation = chunk.generation;
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Parses a range of chunks, splitting it in half until only one chunk is left.
+     */
+    private static class ParseChunks extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ByteBuffer buffer;
+        private final List<Integer> bounds;
+        private final TaskFile[] chunks;
+        private final int from;
+        private final int to;
+
+        private ParseChunks(ByteBuffer buffer, List<Integer> bounds, TaskFile[] chunks, int from, int to) {
+            this.buffer = buffer;
+            this.bounds = bounds;
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (to > from) {
+                    chunks[from] = parseChunk(buffer, bounds.get(from), bounds.get(to));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ParseChunks(buffer, bounds, chunks, from, middle),
+                    new ParseChunks(buffer, bounds, chunks, middle, to));
+        }
+    }
+}
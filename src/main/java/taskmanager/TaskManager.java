@@ -1,33 +1,456 @@
 package taskmanager;
 
+import deadline.Deadline;
+import deadlineindex.DeadlineIndex;
+import event.Event;
+import eventindex.EventIndex;
 import exception.GenesisException;
+import operationlog.OperationLog;
+import searchindex.SearchIndex;
 import task.Task;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.stream.Collectors;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
+/**
+ * Manages a list of tasks and the indexes over it. Safe to use from many threads.
+ *
+ * Adding and deleting tasks takes an exclusive lock. Marking and unmarking a single task only lock
+ * that task, so they run concurrently with each other and with searches; the caller can journal the
+ * change inside the same scope (see {@link #markTask(int, Runnable)}). Listing reads an
+ * immutable snapshot of the list without taking any lock; the snapshot is rebuilt lazily after
+ * the list changes.
+ *
+ * Every change is also logged in a bounded undo history (see {@link OperationLog}).
+ */
 public class TaskManager {
+    private static final int DEFAULT_HISTORY_OPERATIONS = 100;
+    private static final long DEFAULT_HISTORY_BYTES = 1 << 20;
+
+    /**
+     * A change to the task manager that must not interleave with other changes.
+     */
+    public interface Mutation<T> {
+        T apply() throws GenesisException;
+    }
+
     protected ArrayList<Task> tasks;
+    protected HashSet<String> descriptions;
+    protected SearchIndex searchIndex;
+    protected EventIndex eventIndex;
+    protected DeadlineIndex deadlineIndex;
+    protected long nextId = 1;
+    protected OperationLog history = new OperationLog(DEFAULT_HISTORY_OPERATIONS, DEFAULT_HISTORY_BYTES);
+
+    // Set while undoing or redoing, under the write lock, so those changes are not logged again.
+    private boolean isUndoing;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile List<Task> snapshot = Collections.emptyList();
 
     /**
      * Constructs a TaskManager.
      */
     public TaskManager() {
         this.tasks = new ArrayList<>();
+        this.descriptions = new HashSet<>();
+        this.searchIndex = new SearchIndex();
+        this.eventIndex = new EventIndex();
+        this.deadlineIndex = new DeadlineIndex();
     }
 
     /**
-     * Returns the list of tasks.
+     * Returns an immutable snapshot of the list of tasks. Later changes to the task list are not
+     * reflected in it.
      *
      * @return The list of tasks.
      */
-    public ArrayList<Task> getTasks() {
-        return this.tasks;
+    public List<Task> getTasks() {
+        List<Task> current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        lock.readLock().lock();
+        try {
+            current = Collections.unmodifiableList(new ArrayList<>(tasks));
+            snapshot = current;
+            return current;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of tasks in the list. Cheaper than the size of {@link #getTasks()}, which
+     * has to copy the list after every change.
+     *
+     * @return The number of tasks.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return tasks.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Passes every task to the action in list order, without copying the list. The list cannot
+     * change until the action has seen every task, so the action must not change it either.
+     *
+     * @param action The action to run on each task.
+     */
+    public void forEachTask(Consumer<? super Task> action) {
+        lock.readLock().lock();
+        try {
+            tasks.forEach(action);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Runs a change while no other add, delete or mutation can run, e.g. to apply a command and
+     * record it in the journal in the same order as every other command.
+     *
+     * @param mutation The change to run.
+     * @return The result of the change.
+     * @throws GenesisException If the change fails.
+     */
+    public <T> T atomically(Mutation<T> mutation) throws GenesisException {
+        lock.writeLock().lock();
+        try {
+            return mutation.apply();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Runs a group of changes as one unit. If the mutation fails, the task list, completion states,
+     * indexes and next id are put back the way they were before it started, and the failure is
+     * rethrown. Nothing else can change the task manager in the meantime. If it succeeds, its
+     * changes are undone together.
+     *
+     * @param mutation The changes to run.
+     * @return The result of the changes.
+     * @throws GenesisException If the changes fail.
+     */
+    public <T> T transactionally(Mutation<T> mutation) throws GenesisException {
+        lock.writeLock().lock();
+        try {
+            List<Task> savedTasks = new ArrayList<>(tasks);
+            BitSet completed = new BitSet(savedTasks.size());
+            for (int i = 0; i < savedTasks.size(); i++) {
+                if (savedTasks.get(i).isComplete()) {
+                    completed.set(i);
+                }
+            }
+            long savedNextId = nextId;
+            history.beginGroup();
+            try {
+                T result = mutation.apply();
+                history.endGroup();
+                return result;
+            } catch (GenesisException | RuntimeException e) {
+                history.abortGroup();
+                restore(savedTasks, completed, savedNextId);
+                throw e;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Puts the task list back to a saved state and rebuilds every index from it. Only called
+     * when a transaction fails, so it is fine for this to cost a full pass over the list.
+     */
+    private void restore(List<Task> savedTasks, BitSet completed, long savedNextId) {
+        tasks.clear();
+        tasks.addAll(savedTasks);
+        descriptions.clear();
+        searchIndex = new SearchIndex();
+        eventIndex = new EventIndex();
+        deadlineIndex.clear();
+        for (int i = 0; i < tasks.size(); i++) {
+            Task task = tasks.get(i);
+            synchronized (task) {
+                if (completed.get(i) && !task.isComplete()) {
+                    task.mark();
+                } else if (!completed.get(i) && task.isComplete()) {
+                    task.unmark();
+                }
+            }
+            descriptions.add(normalize(task.getDescription()));
+            index(task);
+        }
+        nextId = savedNextId;
+        snapshot = null;
+    }
+
+    /**
+     * Adds a change that was just made to the undo history, unless it is itself an undo or redo.
+     *
+     * @param operation The change.
+     */
+    protected void recordOperation(OperationLog.Operation operation) {
+        if (!isUndoing) {
+            history.record(operation);
+        }
+    }
+
+    /**
+     * Forgets the undo history, e.g. after loading or after changes that cannot be undone.
+     */
+    public void clearHistory() {
+        history.clear();
+    }
+
+    /**
+     * Undoes the most recent change that has not been undone yet.
+     *
+     * @param records Receives the commands that replay the undo, for the journal.
+     * @return A short description of the change that was undone.
+     * @throws GenesisException If there is nothing to undo.
+     */
+    public String undo(List<String> records) throws GenesisException {
+        return atomically(() -> {
+            OperationLog.Operation operation = history.takeUndo();
+            if (operation == null) {
+                throw new GenesisException("Nothing to undo!");
+            }
+            replay(() -> {
+                operation.undo(this, records);
+                return null;
+            }, records);
+            history.pushRedo(operation);
+            return operation.describe();
+        });
+    }
+
+    /**
+     * Makes the most recently undone change again.
+     *
+     * @param records Receives the commands that replay the redo, for the journal.
+     * @return A short description of the change that was redone.
+     * @throws GenesisException If there is nothing to redo.
+     */
+    public String redo(List<String> records) throws GenesisException {
+        return atomically(() -> {
+            OperationLog.Operation operation = history.takeRedo();
+            if (operation == null) {
+                throw new GenesisException("Nothing to redo!");
+            }
+            replay(() -> {
+                operation.redo(this, records);
+                return null;
+            }, records);
+            history.pushUndo(operation);
+            return operation.describe();
+        });
+    }
+
+    /**
+     * Runs an undo or redo as one unit without logging it. If it fails, the list is left as it was
+     * and the history is cleared, since it no longer matches the list.
+     */
+    private void replay(Mutation<Void> mutation, List<String> records) throws GenesisException {
+        isUndoing = true;
+        try {
+            transactionally(mutation);
+        } catch (GenesisException e) {
+            records.clear();
+            history.clear();
+            throw new GenesisException("Could not reverse the change: " + e.getMessage());
+        } finally {
+            isUndoing = false;
+        }
+    }
+
+    /**
+     * Returns the tasks whose description contains the given term, using the full-text index.
+     *
+     * @param term The text to look for.
+     * @param isCaseInsensitive If true, letter case is ignored when matching.
+     * @return The matching tasks, in no particular order.
+     */
+    public Set<Task> search(String term, boolean isCaseInsensitive) {
+        lock.readLock().lock();
+        try {
+            return searchIndex.search(term, isCaseInsensitive);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns an upper bound on the number of tasks {@link #search} would examine for the term.
+     *
+     * @param term The text to look for.
+     * @return The estimated number of candidates.
+     */
+    public int estimateSearch(String term) {
+        lock.readLock().lock();
+        try {
+            return searchIndex.estimate(term);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of events in the interval index.
+     *
+     * @return The number of events.
+     */
+    public int getEventCount() {
+        lock.readLock().lock();
+        try {
+            return eventIndex.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the events overlapping a date range, using the interval index.
+     *
+     * @param from The first day of the range, inclusive.
+     * @param to The last day of the range, inclusive.
+     * @return The overlapping events, ordered by start date.
+     */
+    public List<Event> findEvents(LocalDate from, LocalDate to) {
+        lock.readLock().lock();
+        try {
+            return eventIndex.findOverlapping(from, to);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the incomplete deadlines due first, including overdue ones, using the due-date index.
+     *
+     * @param count The maximum number of deadlines to return.
+     * @return The deadlines, earliest first.
+     */
+    public List<Deadline> nextDeadlines(int count) {
+        lock.readLock().lock();
+        try {
+            return deadlineIndex.next(count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the incomplete deadlines due on or before a date, including overdue ones, using the
+     * due-date index.
+     *
+     * @param date The last due date to include.
+     * @return The deadlines, earliest first.
+     */
+    public List<Deadline> deadlinesDueBy(LocalDate date) {
+        lock.readLock().lock();
+        try {
+            return deadlineIndex.dueBy(date);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of deadlines in the due-date index, i.e. those not complete yet.
+     *
+     * @return The number of pending deadlines.
+     */
+    public int getPendingDeadlineCount() {
+        lock.readLock().lock();
+        try {
+            return deadlineIndex.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the id that will be given to the next added task.
+     *
+     * @return The next task id.
+     */
+    public long getNextId() {
+        lock.readLock().lock();
+        try {
+            return this.nextId;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Makes sure ids below the given value are never handed out again, e.g. after loading a snapshot.
+     *
+     * @param nextId The lowest id that may be handed out.
+     */
+    public void reserveIds(long nextId) {
+        lock.writeLock().lock();
+        try {
+            this.nextId = Math.max(this.nextId, nextId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void assignId(Task task) {
+        if (task.getId() == 0) {
+            task.setId(nextId++);
+        } else {
+            nextId = Math.max(nextId, task.getId() + 1);
+        }
+    }
+
+    /**
+     * Returns the key under which a task is kept in the description index. Descriptions that differ
+     * only in case or surrounding whitespace count as the same task.
+     */
+    private static String normalize(String description) {
+        return description.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private void index(Task task) {
+        searchIndex.add(task);
+        if (task instanceof Event) {
+            eventIndex.add((Event) task);
+        }
+        if (task instanceof Deadline && !task.isComplete()) {
+            deadlineIndex.add((Deadline) task);
+        }
+    }
+
+    private void unindex(Task task) {
+        descriptions.remove(normalize(task.getDescription()));
+        searchIndex.remove(task);
+        if (task instanceof Event) {
+            eventIndex.remove((Event) task);
+        }
+        if (task instanceof Deadline) {
+            deadlineIndex.remove((Deadline) task);
+        }
     }
 
     private boolean isDuplicate(Task task) {
-        return tasks.stream()
-                .anyMatch(existingTask -> existingTask.getDescription().equals(task.getDescription()));
+        return descriptions.contains(normalize(task.getDescription()));
     }
 
     /**
@@ -37,79 +460,420 @@ public class TaskManager {
      * @param isSilent If true, suppress output messages.
      */
     public String addTask(Task task, boolean isSilent) throws GenesisException {
-        if (isDuplicate(task)) {
-            throw new GenesisException("This task already exists in the list.");
+        int size;
+        lock.writeLock().lock();
+        try {
+            if (isDuplicate(task)) {
+                throw new GenesisException("This task already exists in the list.");
+            }
+            assignId(task);
+            tasks.add(task);
+            descriptions.add(normalize(task.getDescription()));
+            index(task);
+            size = tasks.size();
+            snapshot = null;
+            recordOperation(OperationLog.added(single(size - 1), List.of(task)));
+        } finally {
+            lock.writeLock().unlock();
         }
-        tasks.add(task);
         if (isSilent) {
             return null;
 
         }
-        return "Got it. I've added this task:\n" + task.toString() + "\nNow you have " + tasks.size()
+        return "Got it. I've added this task:\n" + task.toString() + "\nNow you have " + size
                 + " tasks in the list.";
 
 
     }
     /**
-     * Lists all the tasks in the task list.
+     * Adds a batch of tasks to the task list. The whole batch is checked against the list and
+     * against itself in one pass before anything is added, so either every task is added or none is.
+     *
+     * @param batch The tasks to add, in order.
+     * @throws GenesisException If any task in the batch is a duplicate.
+     */
+    public void addAll(List<Task> batch) throws GenesisException {
+        lock.writeLock().lock();
+        try {
+            HashSet<String> batchDescriptions = new HashSet<>();
+            for (Task task : batch) {
+                String key = normalize(task.getDescription());
+                if (descriptions.contains(key) || !batchDescriptions.add(key)) {
+                    throw new GenesisException("This task already exists in the list: " + task.getDescription());
+                }
+            }
+            int start = tasks.size();
+            tasks.ensureCapacity(tasks.size() + batch.size());
+            for (Task task : batch) {
+                assignId(task);
+                tasks.add(task);
+                index(task);
+            }
+            descriptions.addAll(batchDescriptions);
+            snapshot = null;
+            BitSet positions = new BitSet();
+            positions.set(start, tasks.size());
+            recordOperation(OperationLog.added(positions, new ArrayList<>(batch)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Appends tasks loaded from storage in a single pass, silently dropping any whose
+     * description is already in the list or appears earlier in the batch. Tasks that already
+     * carry an id keep it.
+     *
+     * @param loadedTasks The tasks to append, in order.
+     */
+    public void loadTasks(List<Task> loadedTasks) {
+        lock.writeLock().lock();
+        try {
+            tasks.ensureCapacity(tasks.size() + loadedTasks.size());
+            for (Task task : loadedTasks) {
+                if (descriptions.add(normalize(task.getDescription()))) {
+                    assignId(task);
+                    tasks.add(task);
+                    index(task);
+                }
+            }
+            snapshot = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Puts tasks back into the list at the given positions, e.g. to undo deleting them. Tasks keep
+     * their id and completion state. The list is rebuilt in a single pass.
+     *
+     * @param positions The positions the tasks should end up at.
+     * @param inserted The tasks, in position order.
+     * @throws GenesisException If a position is out of range, or a task or its id is already in the
+     *                          list, in which case nothing is inserted.
      */
+    public void insertTasks(BitSet positions, List<Task> inserted) throws GenesisException {
+        assert positions.cardinality() == inserted.size() : "Every task needs a position!";
+        lock.writeLock().lock();
+        try {
+            if (positions.length() > tasks.size() + inserted.size()) {
+                throw new GenesisException("Invalid task number!");
+            }
+            HashSet<String> keys = new HashSet<>();
+            HashSet<Long> ids = new HashSet<>();
+            for (Task task : inserted) {
+                String key = normalize(task.getDescription());
+                if (descriptions.contains(key) || !keys.add(key)) {
+                    throw new GenesisException("This task already exists in the list: " + task.getDescription());
+                }
+                if (task.getId() > 0 && !ids.add(task.getId())) {
+                    throw new GenesisException("Task id " + task.getId() + " is already in use.");
+                }
+            }
+            if (!ids.isEmpty()) {
+                for (Task task : tasks) {
+                    if (ids.contains(task.getId())) {
+                        throw new GenesisException("Task id " + task.getId() + " is already in use.");
+                    }
+                }
+            }
+            ArrayList<Task> merged = new ArrayList<>(tasks.size() + inserted.size());
+            int fromList = 0;
+            int fromInserted = 0;
+            while (merged.size() < tasks.size() + inserted.size()) {
+                if (positions.get(merged.size())) {
+                    Task task = inserted.get(fromInserted++);
+                    assignId(task);
+                    index(task);
+                    merged.add(task);
+                } else {
+                    merged.add(tasks.get(fromList++));
+                }
+            }
+            tasks = merged;
+            descriptions.addAll(keys);
+            snapshot = null;
+            recordOperation(OperationLog.added((BitSet) positions.clone(), new ArrayList<>(inserted)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
 
+    /**
+     * Lists all the tasks in the task list.
+     */
     public String listTasks() {
-        if (tasks.isEmpty()) {
+        return listTasks(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Lists one page of the task list. Rows keep their position in the full list as their number.
+     *
+     * @param offset Number of tasks to skip from the start of the list.
+     * @param limit Maximum number of tasks to list.
+     */
+    public String listTasks(int offset, int limit) {
+        List<Task> current = getTasks();
+        if (current.isEmpty()) {
             return "No tasks in the list.";
         }
+        if (offset >= current.size()) {
+            return "No tasks in this range.";
+        }
+        StringBuilder builder = new StringBuilder();
+        try {
+            appendTasks(current, builder, offset, limit);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return builder.toString();
+    }
 
-        return tasks.stream()
-                .map(task -> (tasks.indexOf(task) + 1) + ". " + task)
-                .collect(Collectors.joining("\n"));
+    /**
+     * Writes one page of the task list row by row to the given output, without building
+     * the whole listing in memory first.
+     *
+     * @param out Where to write the rows, e.g. a Writer or StringBuilder.
+     * @param offset Number of tasks to skip from the start of the list.
+     * @param limit Maximum number of tasks to write.
+     * @throws IOException If writing to the output fails.
+     */
+    public void appendTasks(Appendable out, int offset, int limit) throws IOException {
+        appendTasks(getTasks(), out, offset, limit);
+    }
+
+    private static void appendTasks(List<Task> current, Appendable out, int offset, int limit) throws IOException {
+        assert offset >= 0 : "Offset should not be negative!";
+        int end = (int) Math.min(current.size(), (long) offset + limit);
+        for (int i = offset; i < end; i++) {
+            if (i > offset) {
+                out.append('\n');
+            }
+            out.append(String.valueOf(i + 1)).append(". ").append(current.get(i).toString());
+        }
     }
     /**
      * Marks the task with the given index.
      *
      * @param index Index of the task to mark.
+     * @throws GenesisException If there is no task at the index.
+     */
+    public String markTask(int index) throws GenesisException {
+        return markTask(index, () -> {});
+    }
+
+    /**
+     * Marks the task with the given index, then runs an action while the task is still locked.
+     * Changes to the same task therefore run their actions in the order they were made, while
+     * marks of other tasks carry on concurrently.
+     *
+     * @param index Index of the task to mark.
+     * @param then The action to run after marking, e.g. recording the command in the journal.
+     * @throws GenesisException If there is no task at the index.
      */
-    public String markTask(int index) {
-        if (isValidIndex(index)) {
-            tasks.get(index).mark();
-            return "Nice! I've marked this task as done:\n" + tasks.get(index).getDescription();
+    public String markTask(int index, Runnable then) throws GenesisException {
+        lock.readLock().lock();
+        try {
+            if (isValidIndex(index)) {
+                Task task = tasks.get(index);
+                synchronized (task) {
+                    if (!task.isComplete()) {
+                        recordOperation(OperationLog.completed(single(index), true));
+                    }
+                    task.mark();
+                    if (task instanceof Deadline) {
+                        deadlineIndex.remove((Deadline) task);
+                    }
+                    then.run();
+                }
+                return "Nice! I've marked this task as done:\n" + task.getDescription();
+            }
+        } finally {
+            lock.readLock().unlock();
         }
-        return "Invalid task number!";
+        throw new GenesisException("Invalid task number!");
     }
     /**
      * Unmarks the task with the given index.
      *
      * @param index Index of the task to unmark.
+     * @throws GenesisException If there is no task at the index.
      */
-    public String unmarkTask(int index) {
-        if (isValidIndex(index)) {
-            tasks.get(index).unmark();
-            return "Ok. I've marked this task as not done yet:\n" + tasks.get(index).getDescription();
+    public String unmarkTask(int index) throws GenesisException {
+        return unmarkTask(index, () -> {});
+    }
+
+    /**
+     * Unmarks the task with the given index, then runs an action while the task is still locked,
+     * as for {@link #markTask(int, Runnable)}.
+     *
+     * @param index Index of the task to unmark.
+     * @param then The action to run after unmarking, e.g. recording the command in the journal.
+     * @throws GenesisException If there is no task at the index.
+     */
+    public String unmarkTask(int index, Runnable then) throws GenesisException {
+        lock.readLock().lock();
+        try {
+            if (isValidIndex(index)) {
+                Task task = tasks.get(index);
+                synchronized (task) {
+                    if (task.isComplete()) {
+                        recordOperation(OperationLog.completed(single(index), false));
+                    }
+                    task.unmark();
+                    if (task instanceof Deadline) {
+                        deadlineIndex.add((Deadline) task);
+                    }
+                    then.run();
+                }
+                return "Ok. I've marked this task as not done yet:\n" + task.getDescription();
+            }
+        } finally {
+            lock.readLock().unlock();
         }
-        return "Invalid task number!";
+        throw new GenesisException("Invalid task number!");
     }
     /**
      * Deletes the task with the given index.
      *
      * @param index Index of the task to delete.
+     * @throws GenesisException If there is no task at the index.
      */
-    public String deleteTask(int index) {
-        if (isValidIndex(index)) {
-            Task removedTask = tasks.remove(index);
-            return "Noted. I have removed the following task: \n" + removedTask.toString() +
-                    "\nNow you have " + tasks.size() + " tasks in the list.";
+    public String deleteTask(int index) throws GenesisException {
+        return deleteTask(index, () -> {});
+    }
+
+    /**
+     * Deletes the task with the given index, then runs an action before any other change can start.
+     *
+     * @param index Index of the task to delete.
+     * @param then The action to run after deleting, e.g. recording the command in the journal.
+     * @throws GenesisException If there is no task at the index.
+     */
+    public String deleteTask(int index, Runnable then) throws GenesisException {
+        lock.writeLock().lock();
+        try {
+            if (isValidIndex(index)) {
+                Task removedTask = tasks.remove(index);
+                unindex(removedTask);
+                snapshot = null;
+                recordOperation(OperationLog.removed(single(index), List.of(removedTask)));
+                then.run();
+                return "Noted. I have removed the following task: \n" + removedTask.toString() +
+                        "\nNow you have " + tasks.size() + " tasks in the list.";
+            }
+        } finally {
+            lock.writeLock().unlock();
         }
-        return "Invalid task number!";
+        throw new GenesisException("Invalid task number!");
     }
 
     /**
-     * Checks if index given is valid.
+     * Marks every task whose index is set in the given set.
      *
-     * @param index Index of the task to check.
+     * @param indices Indices of the tasks to mark.
+     * @return The number of tasks marked.
+     * @throws GenesisException If any index has no task, in which case nothing is marked.
      */
+    public int markTasks(BitSet indices) throws GenesisException {
+        return setCompletion(indices, true);
+    }
 
+    /**
+     * Unmarks every task whose index is set in the given set.
+     *
+     * @param indices Indices of the tasks to unmark.
+     * @return The number of tasks unmarked.
+     * @throws GenesisException If any index has no task, in which case nothing is unmarked.
+     */
+    public int unmarkTasks(BitSet indices) throws GenesisException {
+        return setCompletion(indices, false);
+    }
+
+    private int setCompletion(BitSet indices, boolean isComplete) throws GenesisException {
+        lock.readLock().lock();
+        try {
+            if (indices.length() > tasks.size()) {
+                throw new GenesisException("Invalid task number!");
+            }
+            BitSet changed = new BitSet();
+            for (int i = indices.nextSetBit(0); i >= 0; i = indices.nextSetBit(i + 1)) {
+                Task task = tasks.get(i);
+                synchronized (task) {
+                    if (task.isComplete() != isComplete) {
+                        changed.set(i);
+                    }
+                    if (isComplete) {
+                        task.mark();
+                    } else {
+                        task.unmark();
+                    }
+                    if (task instanceof Deadline && isComplete) {
+                        deadlineIndex.remove((Deadline) task);
+                    } else if (task instanceof Deadline) {
+                        deadlineIndex.add((Deadline) task);
+                    }
+                }
+            }
+            if (!changed.isEmpty()) {
+                recordOperation(OperationLog.completed(changed, isComplete));
+            }
+            return indices.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Deletes every task whose index is set in the given set. The list is compacted in a single
+     * pass, however many tasks are removed.
+     *
+     * @param indices Indices of the tasks to delete.
+     * @return The number of tasks deleted.
+     * @throws GenesisException If any index has no task, in which case nothing is deleted.
+     */
+    public int deleteTasks(BitSet indices) throws GenesisException {
+        lock.writeLock().lock();
+        try {
+            if (indices.length() > tasks.size()) {
+                throw new GenesisException("Invalid task number!");
+            }
+            int kept = 0;
+            List<Task> removed = new ArrayList<>(indices.cardinality());
+            for (int i = 0; i < tasks.size(); i++) {
+                Task task = tasks.get(i);
+                if (indices.get(i)) {
+                    unindex(task);
+                    removed.add(task);
+                } else {
+                    tasks.set(kept++, task);
+                }
+            }
+            tasks.subList(kept, tasks.size()).clear();
+            snapshot = null;
+            recordOperation(OperationLog.removed((BitSet) indices.clone(), removed));
+            return indices.cardinality();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a set holding just the given index.
+     */
+    protected static BitSet single(int index) {
+        BitSet positions = new BitSet(index + 1);
+        positions.set(index);
+        return positions;
+    }
+
+    /**
+     * Checks if index given is valid. With several threads changing the list, an index the caller
+     * saw as valid may no longer be, so this is checked rather than asserted.
+     *
+     * @param index Index of the task to check.
+     */
     private boolean isValidIndex(int index) {
-        assert index >= 0 : "Index should not be negative!";
-        assert index < tasks.size() : "Index should be less than the size of the tasks list!";
         return index >= 0 && index < tasks.size();
     }
 }
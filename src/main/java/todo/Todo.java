@@ -9,13 +9,17 @@ import task.Task;
  */
 public class Todo extends Task {
     /**
-     * Constructs a Todo with the specified description and input.
+     * Constructs a Todo with the specified description.
      *
      * @param description The description of the todo task.
-     * @param input The input used to create the todo task.
      */
-    public Todo (String description, String input) {
-        super(description, input);
+    public Todo (String description) {
+        super(description);
+    }
+
+    @Override
+    public String getInput() {
+        return "todo " + this.description;
     }
 
     /**
@@ -24,7 +28,7 @@ public class Todo extends Task {
      * @return The string representation of the todo task.
      */
     @Override
-    public String toString() {
-        return "[T]" + super.toString();
+    protected String render(boolean isComplete) {
+        return "[T]" + super.render(isComplete);
     }
 }
\ No newline at end of file
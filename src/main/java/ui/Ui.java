@@ -1,17 +1,26 @@
 package ui;
 
+import command.Command;
+import commandhandler.CommandHandler;
 import commandparser.CommandParser;
+import commandregistry.CommandRegistry;
+import exception.GenesisException;
+import metrics.Metrics;
 import taskmanager.TaskManager;
 
+import java.util.List;
+
 /**
  * Handles user input and interaction with the task management system.
  */
 public class Ui {
     protected TaskManager taskManager;
     protected CommandParser parser;
+    protected CommandRegistry registry;
+    protected Metrics metrics = new Metrics(null, null);
 
     /**
-     * Constructs a Ui with the specified TaskManager and CommandParser.
+     * Constructs a Ui with the specified TaskManager and CommandParser, and registers the built-in commands.
      *
      * @param taskManager The TaskManager to manage tasks.
      * @param commandParser The CommandParser to handle commands.
@@ -19,37 +28,101 @@ public class Ui {
     public Ui (TaskManager taskManager, CommandParser commandParser) {
         this.taskManager = taskManager;
         this.parser = commandParser;
+        this.registry = new CommandRegistry();
+        registerDefaultCommands();
+    }
+
+    private void registerDefaultCommands() {
+        registry.register("bye", (command, isSilent) -> parser.handleExit());
+        registry.register("list", (command, isSilent) -> parser.handleList(command));
+        registry.register("mark", (command, isSilent) -> parser.handleMark(command));
+        registry.register("unmark", (command, isSilent) -> parser.handleUnmark(command));
+        registry.register("delete", (command, isSilent) -> parser.handleDelete(command));
+        registry.register("todo", parser::handleAdd);
+        registry.register("deadline", parser::handleAdd);
+        registry.register("event", parser::handleAdd);
+        registry.register("find", (command, isSilent) -> parser.handleFind(command));
+        registry.register("query", (command, isSilent) -> parser.handleQuery(command));
+        registry.register("on", (command, isSilent) -> parser.handleOn(command));
+        registry.register("between", (command, isSilent) -> parser.handleBetween(command));
+        registry.register("upcoming", (command, isSilent) -> parser.handleUpcoming(command));
+        registry.register("batch", (command, isSilent) -> parser.handleBatch(command, registry));
+        registry.register("archive", (command, isSilent) -> parser.handleArchive(command));
+        registry.register("undo", (command, isSilent) -> parser.handleUndo());
+        registry.register("redo", (command, isSilent) -> parser.handleRedo());
+        registry.register("stats", (command, isSilent) -> metrics.report());
     }
+
     /**
-     * Processes user input and delegates to the appropriate command handler.
+     * Sets where command counts and timings are reported, and what the stats command shows.
+     *
+     * @param metrics The metrics to report to.
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Registers a handler for a command keyword, replacing any existing handler for it.
+     *
+     * @param keyword The command keyword.
+     * @param handler The handler to run for the keyword.
+     */
+    public void register(String keyword, CommandHandler handler) {
+        registry.register(keyword, handler);
+    }
+
+    /**
+     * Returns whether the input ends the session. The caller decides what ending means, e.g. closing
+     * the window or a single client connection.
+     *
+     * @param input The user input.
+     * @return True if the input is the bye command.
+     */
+    public static boolean isExit(String input) {
+        return Command.parse(input).getKeyword().equals("bye");
+    }
+
+    /**
+     * Applies a sequence of commands as one all-or-nothing batch.
+     *
+     * @param lines The commands, one per line.
+     * @return The response to each command, in order.
+     * @throws GenesisException If a command fails, in which case nothing was changed.
+     */
+    public List<String> runBatch(List<String> lines) throws GenesisException {
+        return parser.runBatch(lines, registry);
+    }
+
+    /**
+     * Processes user input and delegates to the command handler registered for its keyword.
      *
      * @param input The user input to process.
      * @param isSilent If true, suppress output messages.
      */
     public String handleInput(String input, boolean isSilent) {
-        if (input.equalsIgnoreCase("bye")) {
-            System.out.println("Bye. Hope to see you again soon!");
-            System.exit(0);
-        } else if (input.equalsIgnoreCase("list")) {
-            return taskManager.listTasks();
-        } else if (input.startsWith("mark ")) {
-            return this.parser.handleMark(input);
-        } else if (input.startsWith("unmark ")) {
-            return this.parser.handleUnmark(input);
-        } else if (input.startsWith("delete ")) {
-            return this.parser.handleDelete(input);
-        } else if (input.startsWith("deadline ")) {
-            return this.parser.handleDeadline(input, isSilent);
-        } else if (input.startsWith("todo ")) {
-            return this.parser.handleTodo(input, isSilent);
-        } else if (input.startsWith("event ")) {
-            return this.parser.handleEvent(input, isSilent);
-        } else if (input.startsWith("find ")) {
-            return this.parser.handleFind(input);
+        if (!metrics.isEnabled()) {
+            try {
+                return registry.dispatch(Command.parse(input), isSilent);
+            } catch (GenesisException e) {
+                return e.getMessage();
+            }
         }
-        return "Sorry, I am not sure what task this is! Please enter a valid task.";
-    }
-
-
 
+        long start = System.nanoTime();
+        Command command = Command.parse(input);
+        long parsed = System.nanoTime();
+        metrics.beginCommand();
+        boolean isError = false;
+        try {
+            return registry.dispatch(command, isSilent);
+        } catch (GenesisException e) {
+            isError = true;
+            return e.getMessage();
+        } finally {
+            // Unknown keywords share one entry, so typos cannot grow the metrics without bound.
+            String keyword = registry.isRegistered(command.getKeyword()) ? command.getKeyword() : null;
+            metrics.recordCommand(keyword, parsed - start, System.nanoTime() - parsed, isError);
+        }
+    }
 }
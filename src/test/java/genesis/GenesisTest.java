@@ -1,18 +1,64 @@
 package genesis;
+import archive.Archive;
+import command.Command;
+import commandparser.CommandParser;
+import commandregistry.CommandRegistry;
+import deadline.Deadline;
+import deadlineindex.DeadlineIndex;
+import event.Event;
+import eventindex.EventIndex;
+import exception.GenesisException;
+import latencyhistogram.LatencyHistogram;
+import metrics.Metrics;
 import org.junit.jupiter.api.Test;
+import pagedstore.PagedTaskStore;
+import pagedtaskmanager.PagedTaskManager;
+import query.Query;
+import searchindex.SearchIndex;
+import snapshot.Snapshot;
+import storage.Storage;
 import task.Task;
+import taskfile.TaskFile;
 import taskmanager.TaskManager;
+import ui.Ui;
 import todo.Todo;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 public class GenesisTest {
+    private static final int THREADS = 8;
+
     private TaskManager taskManager;
 
 
     /*@Test
     public void testAddTask() {
-        Task todo = new Todo("Test Task", "todo Test Task");
+        Task todo = new Todo("Test Task");
         taskManager = new TaskManager();
         taskManager.addTask(todo, true);
         assertEquals(1, taskManager.getTasks().size());
@@ -21,10 +67,1361 @@ public class GenesisTest {
 
     @Test
     public void testMarkTask() {
-        Task todo = new Todo("Test Task", "todo Test Task");
+        Task todo = new Todo("Test Task");
         taskManager = new TaskManager();
         taskManager.addTask(todo, true);
         taskManager.markTask(0);
         assertTrue(taskManager.getTasks().get(0).isComplete);
     }*/
+
+    @Test
+    public void testConcurrentAddsWithSnapshotReaders() throws Exception {
+        taskManager = new TaskManager();
+        int perThread = 500;
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS * 2);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger writersLeft = new AtomicInteger(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    taskManager.addTask(new Todo("task " + thread + "-" + i), true);
+                }
+                writersLeft.decrementAndGet();
+                return null;
+            }));
+            futures.add(pool.submit(() -> {
+                start.await();
+                int lastSize = 0;
+                while (writersLeft.get() > 0) {
+                    List<Task> snapshot = taskManager.getTasks();
+                    assertTrue(snapshot.size() >= lastSize, "Snapshots should never shrink while only adding");
+                    lastSize = snapshot.size();
+                    taskManager.listTasks(0, 50);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        List<Task> tasks = taskManager.getTasks();
+        assertEquals(THREADS * perThread, tasks.size());
+        Set<Long> ids = new HashSet<>();
+        for (Task task : tasks) {
+            assertTrue(ids.add(task.getId()), "Every task should get its own id");
+        }
+        assertEquals(1, taskManager.search("task 3-499", false).size());
+        assertThrows(GenesisException.class, () -> taskManager.addTask(new Todo("task 0-0"), true));
+    }
+
+    @Test
+    public void testConcurrentMarkAndUnmarkKeepDeadlineIndexConsistent() throws Exception {
+        Task.setRenderingCached(true);
+        try {
+            taskManager = new TaskManager();
+            int count = 200;
+            for (int i = 0; i < count; i++) {
+                LocalDate date = LocalDate.of(2024, 1, 1).plusDays(i);
+                taskManager.addTask(new Deadline("deadline " + i, date), true);
+            }
+            ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                long seed = t;
+                futures.add(pool.submit(() -> {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < 5000; i++) {
+                        int index = random.nextInt(count);
+                        if (random.nextBoolean()) {
+                            taskManager.markTask(index);
+                        } else {
+                            taskManager.unmarkTask(index);
+                        }
+                        taskManager.getTasks().get(random.nextInt(count)).toString();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+            pool.shutdown();
+
+            int pending = 0;
+            for (Task task : taskManager.getTasks()) {
+                if (!task.isComplete()) {
+                    pending++;
+                }
+                assertEquals(task.isComplete(), task.toString().contains("[X]"), "Cached rendering should match state");
+            }
+            assertEquals(pending, taskManager.getPendingDeadlineCount());
+        } finally {
+            Task.setRenderingCached(false);
+        }
+    }
+
+    @Test
+    public void testRenderingIsTheSameWithAndWithoutCache() {
+        Deadline deadline = new Deadline("return book", LocalDate.of(2024, 2, 29));
+        Event event = new Event("camp", LocalDate.of(2024, 7, 1), LocalDate.of(2024, 7, 3));
+        Task.setRenderingCached(false);
+        String onDemand = deadline.toString();
+        String eventOnDemand = event.toString();
+        assertFalse(onDemand == deadline.toString(), "Should be rebuilt on every call");
+        try {
+            Task.setRenderingCached(true);
+            String cached = deadline.toString();
+            assertEquals(onDemand, cached);
+            assertEquals(eventOnDemand, event.toString());
+            assertTrue(cached == deadline.toString(), "Should be built once");
+
+            deadline.mark();
+            String marked = deadline.toString();
+            assertTrue(marked.contains("[X]"));
+            assertTrue(marked == deadline.toString(), "Should be built once after marking");
+            deadline.unmark();
+            assertEquals(cached, deadline.toString());
+
+            Task.setRenderingCached(false);
+            deadline.mark();
+            assertEquals(marked, deadline.toString());
+        } finally {
+            Task.setRenderingCached(false);
+        }
+    }
+
+    @Test
+    public void testConcurrentDeletesRemoveEachTaskExactlyOnce() throws Exception {
+        taskManager = new TaskManager();
+        int count = 2000;
+        for (int i = 0; i < count; i++) {
+            taskManager.addTask(new Todo("todo " + i), true);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        AtomicInteger deleted = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                while (true) {
+                    try {
+                        taskManager.deleteTask(0);
+                        deleted.incrementAndGet();
+                    } catch (GenesisException e) {
+                        return null;
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertEquals(count, deleted.get());
+        assertTrue(taskManager.getTasks().isEmpty());
+        assertFalse(taskManager.search("todo", false).iterator().hasNext());
+        taskManager.addTask(new Todo("todo 1"), true);
+        assertEquals(1, taskManager.getTasks().size());
+    }
+
+    @Test
+    public void testSingleMarksAreRecordedConcurrently() throws Exception {
+        Path directory = Files.createTempDirectory("genesis");
+        try {
+            taskManager = new TaskManager();
+            taskManager.addTask(new Todo("read book"), true);
+            taskManager.addTask(new Todo("write essay"), true);
+            CountDownLatch bothRecording = new CountDownLatch(2);
+            AtomicInteger overlapping = new AtomicInteger();
+            Storage storage = new Storage(taskManager, directory) {
+                @Override
+                public void record(String command) {
+                    bothRecording.countDown();
+                    try {
+                        if (bothRecording.await(10, TimeUnit.SECONDS)) {
+                            overlapping.incrementAndGet();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            };
+            CommandParser parser = new CommandParser(taskManager, storage);
+            ExecutorService pool = Executors.newFixedThreadPool(2);
+            Future<String> first = pool.submit(() -> parser.handleMark(Command.parse("mark 1")));
+            Future<String> second = pool.submit(() -> parser.handleMark(Command.parse("mark 2")));
+            first.get(30, TimeUnit.SECONDS);
+            second.get(30, TimeUnit.SECONDS);
+            pool.shutdown();
+
+            assertEquals(2, overlapping.get(), "Marks of different tasks should be recorded at the same time");
+            assertTrue(taskManager.getTasks().get(0).isComplete());
+            assertTrue(taskManager.getTasks().get(1).isComplete());
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    public void testFailedTransactionRestoresTasksAndIndexes() throws GenesisException {
+        taskManager = new TaskManager();
+        taskManager.addTask(new Todo("read book"), true);
+        LocalDate date = LocalDate.of(2024, 1, 1);
+        taskManager.addTask(new Deadline("return book", date), true);
+        String before = taskManager.listTasks();
+
+        assertThrows(GenesisException.class, () -> taskManager.transactionally(() -> {
+            taskManager.addTask(new Todo("write essay"), true);
+            taskManager.markTask(1);
+            taskManager.deleteTask(0);
+            return taskManager.deleteTask(5);
+        }));
+
+        assertEquals(before, taskManager.listTasks());
+        assertEquals(1, taskManager.getPendingDeadlineCount());
+        assertEquals(1, taskManager.search("read", false).size());
+        assertTrue(taskManager.search("essay", false).isEmpty());
+        taskManager.addTask(new Todo("write essay"), true);
+        assertEquals(3, taskManager.getTasks().size());
+    }
+
+    @Test
+    public void testAddAllRejectsDuplicatesWithoutAddingAnything() throws GenesisException {
+        taskManager = new TaskManager();
+        taskManager.addTask(new Todo("read book"), true);
+        long nextId = taskManager.getNextId();
+
+        assertThrows(GenesisException.class, () -> taskManager.addAll(List.of(
+                new Todo("write essay"), new Todo("  READ Book "))));
+        assertThrows(GenesisException.class, () -> taskManager.addAll(List.of(
+                new Todo("write essay"), new Deadline("Write essay", LocalDate.of(2024, 1, 1)))));
+        assertEquals(1, taskManager.getTasks().size());
+        assertEquals(nextId, taskManager.getNextId());
+        assertTrue(taskManager.search("essay", false).isEmpty());
+        assertEquals(0, taskManager.getPendingDeadlineCount());
+
+        taskManager.addAll(List.of(new Todo("write essay"), new Deadline("return book", LocalDate.of(2024, 1, 1))));
+        List<Task> tasks = taskManager.getTasks();
+        assertEquals(3, tasks.size());
+        assertEquals(List.of(1L, 2L, 3L), List.of(tasks.get(0).getId(), tasks.get(1).getId(), tasks.get(2).getId()));
+        assertEquals(1, taskManager.getPendingDeadlineCount());
+        assertThrows(GenesisException.class, () -> taskManager.addTask(new Todo("Write Essay"), true));
+
+        taskManager.deleteTask(1);
+        taskManager.addTask(new Todo("write essay"), true);
+        assertEquals(3, taskManager.getTasks().size());
+    }
+
+    @Test
+    public void testListPagesKeepRowNumbers() throws Exception {
+        taskManager = new TaskManager();
+        Storage storage = new Storage(taskManager, Path.of("unused"), false, 0, 1000);
+        Ui ui = new Ui(taskManager, new CommandParser(taskManager, storage));
+        assertEquals("No tasks in the list.", ui.handleInput("list", false));
+        for (int i = 1; i <= 5; i++) {
+            taskManager.addTask(new Todo("todo " + i), true);
+        }
+
+        assertEquals("1. [T][ ] todo 1\n2. [T][ ] todo 2", ui.handleInput("list 0 2", false));
+        assertEquals("4. [T][ ] todo 4\n5. [T][ ] todo 5", ui.handleInput("list 3 10", false));
+        assertEquals("5. [T][ ] todo 5", ui.handleInput("list 4", false));
+        assertEquals("4. [T][ ] todo 4\n5. [T][ ] todo 5", ui.handleInput("list 3 " + Integer.MAX_VALUE, false));
+        assertEquals("No tasks in this range.", ui.handleInput("list 5", false));
+        assertEquals(taskManager.listTasks(), ui.handleInput("list", false));
+        for (String input : List.of("list -1 2", "list 0 0", "list 0 -3", "list two", "list 0 99999999999")) {
+            assertFalse(ui.handleInput(input, false).contains("[T]"), input);
+        }
+        storage.close();
+
+        StringBuilder rows = new StringBuilder();
+        taskManager.appendTasks(rows, 1, 3);
+        assertEquals("2. [T][ ] todo 2\n3. [T][ ] todo 3\n4. [T][ ] todo 4", rows.toString());
+        rows.setLength(0);
+        taskManager.appendTasks(rows, 5, 3);
+        assertEquals("", rows.toString());
+    }
+
+    @Test
+    public void testRegistryDispatchesByKeyword() throws GenesisException {
+        Command command = Command.parse("  DeadLine\treturn  book /by 2024-06-06  ");
+        assertEquals("deadline", command.getKeyword());
+        assertEquals("return  book /by 2024-06-06", command.getArguments());
+        assertEquals(List.of("return", "book", "/by", "2024-06-06"), command.getWords());
+        Command blank = Command.parse(" \t ");
+        assertEquals("", blank.getKeyword());
+        assertFalse(blank.hasArguments());
+        assertTrue(blank.getWords().isEmpty());
+
+        CommandRegistry registry = new CommandRegistry();
+        registry.register("Echo", (echoed, isSilent) -> echoed.getArguments() + (isSilent ? "!" : ""));
+        assertTrue(registry.isRegistered("ECHO"));
+        assertFalse(registry.isRegistered("ech"));
+        assertEquals("hi there", registry.dispatch(Command.parse("echo hi there"), false));
+        assertEquals("!", registry.dispatch(Command.parse("eChO"), true));
+        registry.register("echo", (echoed, isSilent) -> "replaced");
+        assertEquals("replaced", registry.dispatch(Command.parse("echo hi"), false));
+        for (String input : List.of("", "   ", "echoes", "ech o", "/by 2024-06-06")) {
+            assertThrows(GenesisException.class, () -> registry.dispatch(Command.parse(input), false), input);
+        }
+
+        taskManager = new TaskManager();
+        Storage storage = new Storage(taskManager, Path.of("unused"), false, 0, 1000);
+        Ui ui = new Ui(taskManager, new CommandParser(taskManager, storage));
+        ui.register("shout", (shouted, isSilent) -> shouted.getArguments().toUpperCase());
+        assertEquals("HELLO", ui.handleInput("Shout hello", false));
+        String unknown = ui.handleInput("frobnicate 1", false);
+        assertTrue(unknown.startsWith("Sorry"), unknown);
+        assertEquals(unknown, ui.handleInput("", false));
+        assertTrue(ui.handleInput("todo", false).toLowerCase().contains("description"));
+        assertTrue(taskManager.getTasks().isEmpty());
+        storage.close();
+    }
+
+    @Test
+    public void testBulkDeleteKeepsOrderAndIndexes() throws GenesisException {
+        taskManager = new TaskManager();
+        for (int i = 1; i <= 6; i++) {
+            LocalDate date = LocalDate.of(2024, 1, i);
+            taskManager.addTask(new Deadline("deadline " + i, date), true);
+        }
+        BitSet selected = new BitSet();
+        selected.set(0);
+        selected.set(2, 5);
+        assertEquals(4, taskManager.deleteTasks(selected));
+
+        List<Task> tasks = taskManager.getTasks();
+        assertEquals(2, tasks.size());
+        assertEquals("deadline 2", tasks.get(0).getDescription());
+        assertEquals("deadline 6", tasks.get(1).getDescription());
+        assertEquals(2, taskManager.getPendingDeadlineCount());
+        assertTrue(taskManager.search("deadline 3", false).isEmpty());
+
+        selected.set(7);
+        assertThrows(GenesisException.class, () -> taskManager.deleteTasks(selected));
+        assertEquals(2, taskManager.getTasks().size());
+    }
+
+    @Test
+    public void testUndoAndRedoDeleteKeepPositionsAndIndexes() throws GenesisException {
+        taskManager = new TaskManager();
+        for (int i = 1; i <= 6; i++) {
+            LocalDate date = LocalDate.of(2024, 1, i);
+            taskManager.addTask(new Deadline("deadline " + i, date), true);
+        }
+        taskManager.clearHistory();
+        taskManager.markTask(1);
+        BitSet selected = new BitSet();
+        selected.set(1, 4);
+        taskManager.deleteTasks(selected);
+
+        List<String> records = new ArrayList<>();
+        taskManager.undo(records);
+        assertEquals(List.of("restore 2 2 X deadline deadline 2 /by 2024-01-02",
+                "restore 3 3 - deadline deadline 3 /by 2024-01-03",
+                "restore 4 4 - deadline deadline 4 /by 2024-01-04"), records);
+        List<Task> tasks = taskManager.getTasks();
+        assertEquals(6, tasks.size());
+        assertEquals("deadline 3", tasks.get(2).getDescription());
+        assertTrue(tasks.get(1).isComplete());
+        assertEquals(5, taskManager.getPendingDeadlineCount());
+
+        taskManager.undo(new ArrayList<>());
+        assertFalse(taskManager.getTasks().get(1).isComplete());
+        assertEquals(6, taskManager.getPendingDeadlineCount());
+        assertThrows(GenesisException.class, () -> taskManager.undo(new ArrayList<>()));
+
+        taskManager.redo(new ArrayList<>());
+        taskManager.redo(new ArrayList<>());
+        assertEquals(3, taskManager.getTasks().size());
+        assertTrue(taskManager.search("deadline 3", false).isEmpty());
+    }
+
+    @Test
+    public void testJournalReplaysAcrossRestart() throws Exception {
+        Path directory = Files.createTempDirectory("genesis");
+        try {
+            taskManager = new TaskManager();
+            Storage storage = new Storage(taskManager, directory, true, 0, 1000);
+            CommandParser commandParser = new CommandParser(taskManager, storage);
+            Ui ui = new Ui(taskManager, commandParser);
+            storage.loadTasks(commandParser, ui);
+            ui.handleInput("todo read book", false);
+            ui.handleInput("deadline return book /by 2024-06-06", false);
+            ui.handleInput("event book fair /from 2024-07-01 /to 2024-07-03", false);
+            ui.handleInput("todo buy pens", false);
+            ui.handleInput("mark 2", false);
+            ui.handleInput("delete 2", false);
+            ui.handleInput("mark 1", false);
+            ui.handleInput("undo", false);
+            ui.handleInput("undo", false);
+            String before = taskManager.listTasks();
+            List<Long> ids = new ArrayList<>();
+            for (Task task : taskManager.getTasks()) {
+                ids.add(task.getId());
+            }
+            storage.close();
+
+            String journal = Files.readString(directory.resolve("tasks.0.log"));
+            assertTrue(journal.contains("restore 2 2 X deadline return book /by 2024-06-06\n"), journal);
+
+            taskManager = new TaskManager();
+            storage = new Storage(taskManager, directory, true, 0, 1000);
+            commandParser = new CommandParser(taskManager, storage);
+            storage.loadTasks(commandParser, new Ui(taskManager, commandParser));
+            try {
+                assertEquals(before, taskManager.listTasks());
+                List<Task> tasks = taskManager.getTasks();
+                assertEquals(4, tasks.size());
+                for (int i = 0; i < tasks.size(); i++) {
+                    assertEquals((long) ids.get(i), tasks.get(i).getId());
+                }
+                assertFalse(tasks.get(0).isComplete());
+                assertTrue(tasks.get(1).isComplete());
+                assertEquals(0, taskManager.getPendingDeadlineCount());
+                assertEquals(1, taskManager.findEvents(LocalDate.of(2024, 7, 2), LocalDate.of(2024, 7, 2)).size());
+
+                // Restore records are only for replay; users cannot type them.
+                Ui reloadedUi = new Ui(taskManager, commandParser);
+                assertEquals("Sorry, I am not sure what task this is! Please enter a valid task.",
+                        reloadedUi.handleInput("restore 1 2 - deadline forged /by 2024-06-06", false));
+                assertEquals(before, taskManager.listTasks());
+
+                Todo clash = new Todo("forged");
+                clash.setId(ids.get(0));
+                BitSet first = new BitSet();
+                first.set(0);
+                assertThrows(GenesisException.class, () -> taskManager.insertTasks(first, List.of(clash)));
+                assertEquals(before, taskManager.listTasks());
+            } finally {
+                storage.close();
+            }
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    public void testByeFlushesWithoutEndingOtherSessions() throws Exception {
+        Path directory = Files.createTempDirectory("genesis");
+        try {
+            taskManager = new TaskManager();
+            // Long enough that only bye can have written anything.
+            Storage storage = new Storage(taskManager, directory, true, 0, 1000, 60_000);
+            CommandParser commandParser = new CommandParser(taskManager, storage);
+            Ui ui = new Ui(taskManager, commandParser);
+            storage.loadTasks(commandParser, ui);
+            Path journal = directory.resolve("tasks.0.log");
+            try {
+                ui.handleInput("todo read book", false);
+                assertFalse(Files.exists(journal));
+                assertTrue(Ui.isExit("  BYE "));
+                assertFalse(Ui.isExit("byebye"));
+                assertTrue(ui.handleInput("bye", false).startsWith("Bye."));
+                assertEquals("todo read book\n", Files.readString(journal));
+                assertEquals(0, storage.getQueueDepth());
+
+                // Another session sharing the same storage carries on after the first one says bye.
+                ui.handleInput("todo write essay", false);
+                ui.handleInput("mark 1", false);
+                assertEquals(2, storage.getQueueDepth());
+                ui.handleInput("bye", false);
+                assertEquals("todo read book\ntodo write essay\nmark 1\n", Files.readString(journal));
+            } finally {
+                storage.close();
+            }
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    public void testWriteBehindCoalescesCommandsUntilFlush() throws Exception {
+        Path directory = Files.createTempDirectory("genesis");
+        try {
+            taskManager = new TaskManager();
+            Storage storage = new Storage(taskManager, directory, true, 0, 1000, 60_000);
+            Metrics metrics = new Metrics(taskManager, storage);
+            metrics.setEnabled(true);
+            storage.setMetrics(metrics);
+            CommandParser commandParser = new CommandParser(taskManager, storage);
+            Ui ui = new Ui(taskManager, commandParser);
+            storage.loadTasks(commandParser, ui);
+            Path journal = directory.resolve("tasks.0.log");
+            StringBuilder expected = new StringBuilder();
+            List<String> tasks;
+            try {
+                for (int i = 1; i <= 10; i++) {
+                    ui.handleInput("todo chore " + i, false);
+                    expected.append("todo chore ").append(i).append('\n');
+                }
+                ui.handleInput("mark 3", false);
+                ui.handleInput("delete 1", false);
+                expected.append("mark 3\ndelete 1\n");
+                assertEquals(12, storage.getQueueDepth());
+                assertEquals(12, metrics.getQueueDepth());
+                assertFalse(Files.exists(journal));
+
+                // The whole burst goes out in one write once flush() returns.
+                storage.flush();
+                assertEquals(0, storage.getQueueDepth());
+                assertEquals(expected.toString(), Files.readString(journal));
+                assertEquals(1, metrics.getFlushCount());
+                assertEquals(expected.length(), metrics.getBytesWritten());
+                tasks = renderings(taskManager.getTasks());
+            } finally {
+                storage.close();
+            }
+
+            taskManager = new TaskManager();
+            Storage reopened = new Storage(taskManager, directory, true, 0, 1000, 60_000);
+            try {
+                CommandParser reopenedParser = new CommandParser(taskManager, reopened);
+                reopened.loadTasks(reopenedParser, new Ui(taskManager, reopenedParser));
+                assertEquals(tasks, renderings(taskManager.getTasks()));
+                assertTrue(taskManager.getTasks().get(1).isComplete());
+                assertEquals(0, reopened.getQueueDepth());
+            } finally {
+                reopened.close();
+            }
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    public void testWriteBehindRewritesSnapshotOnFlush() throws Exception {
+        Path directory = Files.createTempDirectory("genesis");
+        try {
+            taskManager = new TaskManager();
+            Storage storage = new Storage(taskManager, directory, false, 0, 1000, 60_000);
+            CommandParser commandParser = new CommandParser(taskManager, storage);
+            Ui ui = new Ui(taskManager, commandParser);
+            storage.loadTasks(commandParser, ui);
+            Path snapshotFile = directory.resolve("tasks.bin");
+            try {
+                ui.handleInput("todo read book", false);
+                ui.handleInput("todo write essay", false);
+                ui.handleInput("mark 2", false);
+                assertEquals(3, storage.getQueueDepth());
+                assertFalse(Files.exists(snapshotFile));
+
+                // Three mutations, one snapshot of the final list.
+                storage.flush();
+                assertEquals(0, storage.getQueueDepth());
+                assertTrue(Files.exists(snapshotFile));
+            } finally {
+                storage.close();
+            }
+
+            taskManager = new TaskManager();
+            Storage reopened = new Storage(taskManager, directory, false, 0, 1000, 60_000);
+            try {
+                CommandParser reopenedParser = new CommandParser(taskManager, reopened);
+                reopened.loadTasks(reopenedParser, new Ui(taskManager, reopenedParser));
+                assertEquals(List.of("read book", "write essay"), descriptions(taskManager.getTasks()));
+                assertFalse(taskManager.getTasks().get(0).isComplete());
+                assertTrue(taskManager.getTasks().get(1).isComplete());
+            } finally {
+                reopened.close();
+            }
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    public void testLatencyHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileNanos(50));
+        assertEquals(0.0, histogram.getMeanNanos());
+        for (int i = 0; i < 90; i++) {
+            histogram.record(100);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(5000);
+        }
+        histogram.record(-7);
+
+        assertEquals(101, histogram.getCount());
+        assertEquals(59_000, histogram.getTotalNanos());
+        assertEquals(5000, histogram.getMaxNanos());
+        // 100 falls in [64, 127] and 5000 in [4096, 8191]; the top bucket is capped at the maximum.
+        assertEquals(127, histogram.getPercentileNanos(50));
+        assertEquals(127, histogram.getPercentileNanos(90));
+        assertEquals(5000, histogram.getPercentileNanos(99));
+        assertEquals(5000, histogram.getPercentileNanos(100));
+        assertEquals(1, histogram.getPercentileNanos(0.5));
+    }
+
+    @Test
+    public void testStatsReportsCommandsTasksAndStorage() throws Exception {
+        Path directory = Files.createTempDirectory("genesis");
+        try {
+            taskManager = new TaskManager();
+            Storage storage = new Storage(taskManager, directory, true, 0, 1000, 60_000);
+            CommandParser commandParser = new CommandParser(taskManager, storage);
+            Ui ui = new Ui(taskManager, commandParser);
+            Metrics metrics = new Metrics(taskManager, storage);
+            storage.setMetrics(metrics);
+            ui.setMetrics(metrics);
+            storage.loadTasks(commandParser, ui);
+            try {
+                assertEquals("Statistics are turned off.", ui.handleInput("stats", false));
+
+                metrics.setEnabled(true);
+                ui.handleInput("todo read book", false);
+                ui.handleInput("deadline return book /by 2024-02-29", false);
+                ui.handleInput("event camp /from 2024-07-01 /to 2024-07-03", false);
+                ui.handleInput("mark 1", false);
+                ui.handleInput("mark 9", false);
+                ui.handleInput("frobnicate", false);
+                assertEquals(6, metrics.getCommandCount());
+                assertEquals(2, metrics.getErrorCount());
+                assertEquals(4, metrics.getQueueDepth());
+
+                String report = ui.handleInput("stats", false);
+                assertTrue(report.startsWith("Here are the statistics since Genesis started:\n"), report);
+                assertTrue(report.contains("Tasks: 1 todo, 1 deadline, 1 event, 1 done\n"), report);
+                assertTrue(report.contains("Commands: 6 run, 2 failed\n"), report);
+                assertTrue(report.contains("  mark: 2 run, 1 failed, parse "), report);
+                assertTrue(report.contains("  todo: 1 run, 0 failed, parse "), report);
+                assertTrue(report.contains("Storage: 0 bytes in 0 writes"), report);
+                assertTrue(report.contains(", 4 waiting, 0 failed\n"), report);
+                assertFalse(report.contains("frobnicate"), report);
+
+                storage.flush();
+                report = ui.handleInput("stats", false);
+                assertTrue(report.contains("Commands: 7 run, 2 failed\n"), report);
+                assertTrue(report.contains("Storage: " + Files.size(directory.resolve("tasks.0.log")) + " bytes in 1 writes"),
+                        report);
+                assertTrue(report.contains(", 0 waiting, 0 failed\n"), report);
+            } finally {
+                storage.close();
+            }
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    public void testSnapshotRoundTripsTasks() throws Exception {
+        taskManager = new TaskManager();
+        taskManager.addTask(new Todo("read book"), true);
+        taskManager.addTask(new Deadline("return book", LocalDate.of(1960, 2, 29)), true);
+        taskManager.addTask(new Event("caf\u00e9 crawl \u2615", LocalDate.of(2024, 7, 1), LocalDate.of(2024, 7, 3)), true);
+        taskManager.addTask(new Todo("buy pens"), true);
+        taskManager.deleteTask(3);
+        taskManager.markTask(1);
+        Snapshot snapshot = Snapshot.capture(5, taskManager);
+        taskManager.markTask(0);
+
+        Path file = Files.createTempFile("tasks", ".bin");
+        try {
+            try (OutputStream out = Files.newOutputStream(file)) {
+                snapshot.writeTo(out);
+            }
+            Snapshot read = Snapshot.read(file);
+            assertEquals(5, read.getGeneration());
+            assertEquals(5, read.getNextId());
+            List<Task> tasks = read.getTasks();
+            assertEquals(3, tasks.size());
+            assertEquals(List.of(1L, 2L, 3L), List.of(tasks.get(0).getId(), tasks.get(1).getId(), tasks.get(2).getId()));
+            assertFalse(tasks.get(0).isComplete(), "Marks made after the capture should not be saved");
+            assertTrue(tasks.get(1).isComplete());
+            assertEquals("[D][X] return book (by: Feb 29 1960)", tasks.get(1).toString());
+            assertEquals("[E][ ] caf\u00e9 crawl \u2615 (from: Jul 1 2024 to: Jul 3 2024)", tasks.get(2).toString());
+
+            Files.write(file, new byte[] {1, 2, 3});
+            assertThrows(IOException.class, () -> Snapshot.read(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testCompactionFoldsJournalIntoSnapshot() throws Exception {
+        Path directory = Files.createTempDirectory("genesis");
+        try {
+            taskManager = new TaskManager();
+            Storage storage = new Storage(taskManager, directory, true, 0, 10);
+            CommandParser commandParser = new CommandParser(taskManager, storage);
+            Ui ui = new Ui(taskManager, commandParser);
+            storage.loadTasks(commandParser, ui);
+            for (int i = 0; i < 25; i++) {
+                ui.handleInput("todo chore " + i, false);
+            }
+            ui.handleInput("mark 3", false);
+            ui.handleInput("delete 1", false);
+            String before = taskManager.listTasks();
+            storage.close();
+
+            assertTrue(Files.exists(directory.resolve("tasks.bin")));
+            assertFalse(Files.exists(directory.resolve("tasks.0.log")), "Compacted journals should be deleted");
+            long generation = Snapshot.read(directory.resolve("tasks.bin")).getGeneration();
+            assertTrue(generation >= 1, "Compaction should have started a new journal");
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.toList()) {
+                    String name = file.getFileName().toString();
+                    if (name.endsWith(".log")) {
+                        assertTrue(Long.parseLong(name.substring(6, name.length() - 4)) >= generation, name);
+                    }
+                }
+            }
+
+            taskManager = new TaskManager();
+            storage = new Storage(taskManager, directory, true, 0, 10);
+            commandParser = new CommandParser(taskManager, storage);
+            storage.loadTasks(commandParser, new Ui(taskManager, commandParser));
+            try {
+                assertEquals(before, taskManager.listTasks());
+                assertEquals(24, taskManager.getTasks().size());
+                assertEquals(2, taskManager.getTasks().get(0).getId());
+                taskManager.addTask(new Todo("chore 25"), true);
+                assertEquals(26, taskManager.getTasks().get(24).getId());
+            } finally {
+                storage.close();
+            }
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    public void testLoadingTaskFileWritesNothing() throws Exception {
+        Path directory = Files.createTempDirectory("genesis");
+        try {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < 1000; i++) {
+                text.append("todo chore ").append(i).append('\n');
+            }
+            text.append("deadline return book /by 2024-06-06\ntodo chore 7\nmark 1001\n");
+            Path textFile = Files.writeString(directory.resolve("tasks.txt"), text);
+
+            taskManager = new TaskManager();
+            Storage storage = new Storage(taskManager, directory, true, 0, 1000);
+            CommandParser commandParser = new CommandParser(taskManager, storage);
+            storage.loadTasks(commandParser, new Ui(taskManager, commandParser));
+            assertEquals(0, storage.getQueueDepth(), "Loading should not queue any writes");
+            storage.close();
+
+            assertEquals(1001, taskManager.getTasks().size());
+            assertTrue(taskManager.getTasks().get(1000).isComplete());
+            assertEquals(text.toString(), Files.readString(textFile));
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(List.of("tasks.txt"), files.map(file -> file.getFileName().toString()).toList());
+            }
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    public void testSearchIndexMatchesScan() {
+        SearchIndex index = new SearchIndex();
+        List<Task> tasks = new ArrayList<>();
+        String[] words = {"Read", "book", "return", "BOOKS", "pen", "a", "essay", "ab", "bookshelf"};
+        Random random = new Random(7);
+        for (int i = 0; i < 500; i++) {
+            StringBuilder description = new StringBuilder();
+            for (int j = random.nextInt(4); j >= 0; j--) {
+                description.append(words[random.nextInt(words.length)]).append(' ');
+            }
+            Task task = new Todo(description.toString().trim());
+            tasks.add(task);
+            index.add(task);
+        }
+        for (int i = 0; i < tasks.size(); i += 3) {
+            index.remove(tasks.get(i));
+        }
+        index.remove(new Todo("never added"));
+
+        List<String> terms = List.of("book", "Book", "BOOK", "ok", "k", "", "a b", "books", "shelf", "zebra",
+                "read book", "pen e");
+        for (String term : terms) {
+            for (boolean isCaseInsensitive : new boolean[] {false, true}) {
+                Set<Task> expected = new HashSet<>();
+                for (int i = 0; i < tasks.size(); i++) {
+                    String description = tasks.get(i).getDescription();
+                    boolean isMatch = isCaseInsensitive
+                            ? description.toLowerCase().contains(term.toLowerCase())
+                            : description.contains(term);
+                    if (i % 3 != 0 && isMatch) {
+                        expected.add(tasks.get(i));
+                    }
+                }
+                assertEquals(expected, index.search(term, isCaseInsensitive), term);
+                assertTrue(index.estimate(term) >= expected.size(), term);
+            }
+        }
+        assertEquals(0, index.estimate("zebra"));
+        assertTrue(index.estimate("shelf") < index.estimate("ok"), "Longer terms should narrow the candidates");
+    }
+
+    @Test
+    public void testEventIndexFindsOverlappingEvents() throws GenesisException {
+        EventIndex index = new EventIndex();
+        List<Event> events = new ArrayList<>();
+        LocalDate base = LocalDate.of(2024, 1, 1);
+        Random random = new Random(11);
+        for (int i = 0; i < 400; i++) {
+            LocalDate start = base.plusDays(random.nextInt(60));
+            Event event = new Event("event " + i, start, start.plusDays(random.nextInt(10)));
+            event.setId(i + 1);
+            events.add(event);
+            index.add(event);
+        }
+        for (int i = 0; i < events.size(); i += 4) {
+            index.remove(events.get(i));
+        }
+        index.remove(new Event("never added", base, base));
+        assertEquals(300, index.size());
+
+        for (int i = 0; i < 200; i++) {
+            LocalDate from = base.plusDays(random.nextInt(80) - 10);
+            LocalDate to = from.plusDays(random.nextInt(5));
+            Set<Event> expected = new HashSet<>();
+            for (int j = 0; j < events.size(); j++) {
+                Event event = events.get(j);
+                boolean isOverlapping = !event.getStartTime().isAfter(to) && !event.getEndTime().isBefore(from);
+                if (j % 4 != 0 && isOverlapping) {
+                    expected.add(event);
+                }
+            }
+            List<Event> found = index.findOverlapping(from, to);
+            assertEquals(expected, new HashSet<>(found), from + " to " + to);
+            assertEquals(expected.size(), found.size(), "No event should be returned twice");
+            for (int j = 1; j < found.size(); j++) {
+                assertTrue(found.get(j - 1).getStartDay() <= found.get(j).getStartDay(), "Results should be in start order");
+            }
+        }
+
+        taskManager = new TaskManager();
+        taskManager.addTask(new Todo("read book"), true);
+        taskManager.addTask(new Event("book fair", LocalDate.of(2024, 7, 1), LocalDate.of(2024, 7, 3)), true);
+        taskManager.addTask(new Event("fun run", LocalDate.of(2024, 7, 3), LocalDate.of(2024, 7, 3)), true);
+        assertEquals(2, taskManager.findEvents(LocalDate.of(2024, 7, 3), LocalDate.of(2024, 8, 1)).size());
+        taskManager.deleteTask(1);
+        List<Event> left = taskManager.findEvents(LocalDate.of(2024, 6, 1), LocalDate.of(2024, 8, 1));
+        assertEquals(1, left.size());
+        assertEquals("fun run", left.get(0).getDescription());
+        assertTrue(taskManager.findEvents(LocalDate.of(2024, 7, 4), LocalDate.of(2024, 8, 1)).isEmpty());
+    }
+
+    @Test
+    public void testDeadlineIndexTracksPendingDeadlines() throws GenesisException {
+        taskManager = new TaskManager();
+        LocalDate base = LocalDate.of(2024, 3, 1);
+        int[] offsets = {5, -2, 0, 5, 9, 1};
+        for (int i = 0; i < offsets.length; i++) {
+            taskManager.addTask(new Deadline("deadline " + i, base.plusDays(offsets[i])), true);
+            taskManager.addTask(new Todo("todo " + i), true);
+        }
+        assertEquals(12, taskManager.size());
+        assertEquals(6, taskManager.getPendingDeadlineCount());
+        assertEquals(List.of("deadline 1", "deadline 2", "deadline 5", "deadline 0", "deadline 3", "deadline 4"),
+                descriptions(taskManager.nextDeadlines(10)));
+        assertEquals(List.of("deadline 1", "deadline 2"), descriptions(taskManager.nextDeadlines(2)));
+        assertTrue(taskManager.nextDeadlines(0).isEmpty());
+        assertEquals(List.of("deadline 1", "deadline 2", "deadline 5"),
+                descriptions(taskManager.deadlinesDueBy(base.plusDays(1))));
+        assertTrue(taskManager.deadlinesDueBy(base.minusDays(3)).isEmpty());
+        taskManager.nextDeadlines(10).clear();
+        assertEquals(6, taskManager.getPendingDeadlineCount(), "Results should be copies of the index");
+
+        taskManager.markTask(2);
+        taskManager.markTask(3);
+        assertEquals(List.of("deadline 2", "deadline 5"), descriptions(taskManager.deadlinesDueBy(base.plusDays(1))));
+        taskManager.markTask(2);
+        assertEquals(5, taskManager.getPendingDeadlineCount());
+        taskManager.unmarkTask(2);
+        taskManager.unmarkTask(2);
+        assertEquals(6, taskManager.getPendingDeadlineCount());
+
+        taskManager.deleteTask(0);
+        assertEquals(List.of("deadline 1", "deadline 2", "deadline 5", "deadline 3"),
+                descriptions(taskManager.nextDeadlines(4)));
+        taskManager.markTask(1);
+        taskManager.deleteTask(1);
+        assertEquals(4, taskManager.getPendingDeadlineCount());
+        assertEquals(10, taskManager.size());
+        taskManager.undo(new ArrayList<>());
+        assertEquals(4, taskManager.getPendingDeadlineCount(),
+                "Restoring a completed deadline should leave it out of the index");
+        taskManager.undo(new ArrayList<>());
+        taskManager.undo(new ArrayList<>());
+        assertEquals(6, taskManager.getPendingDeadlineCount());
+        assertEquals("deadline 0", taskManager.nextDeadlines(10).get(3).getDescription());
+        assertEquals(12, taskManager.size());
+
+        DeadlineIndex index = new DeadlineIndex();
+        Deadline deadline = new Deadline("return book", base);
+        index.add(deadline);
+        index.add(deadline);
+        assertEquals(1, index.size(), "Adding an indexed deadline again should have no effect");
+    }
+
+    private static List<String> descriptions(List<? extends Task> tasks) {
+        List<String> descriptions = new ArrayList<>();
+        for (Task task : tasks) {
+            descriptions.add(task.getDescription());
+        }
+        return descriptions;
+    }
+
+    private static List<String> renderings(List<? extends Task> tasks) {
+        List<String> renderings = new ArrayList<>();
+        for (Task task : tasks) {
+            renderings.add(task.toString());
+        }
+        return renderings;
+    }
+
+    @Test
+    public void testArchiveMovesCompletedTasksAndFindsThem() throws Exception {
+        Path directory = Files.createTempDirectory("genesis");
+        try {
+            taskManager = new TaskManager();
+            Storage storage = new Storage(taskManager, directory, true, 0, 1000);
+            CommandParser commandParser = new CommandParser(taskManager, storage);
+            Ui ui = new Ui(taskManager, commandParser);
+            storage.loadTasks(commandParser, ui);
+            ui.handleInput("todo read Book", false);
+            ui.handleInput("deadline return book /by 2020-01-10", false);
+            ui.handleInput("event book fair /from 2999-07-01 /to 2999-07-03", false);
+            ui.handleInput("todo buy pens", false);
+            ui.handleInput("mark 1-3", false);
+            assertEquals("No matching archived tasks found.", ui.handleInput("find --archived book", false));
+
+            assertTrue(ui.handleInput("archive 30", false).startsWith("Archived 1 completed tasks."));
+            assertEquals(3, taskManager.getTasks().size());
+            assertTrue(ui.handleInput("undo", false).contains("Nothing to undo"));
+            assertTrue(ui.handleInput("archive", false).startsWith("Archived 2 completed tasks."));
+            assertEquals("No completed tasks to archive.", ui.handleInput("archive", false));
+            List<Task> tasks = taskManager.getTasks();
+            assertEquals(1, tasks.size());
+            assertEquals("buy pens", tasks.get(0).getDescription());
+
+            String found = ui.handleInput("find --archived book", false);
+            assertTrue(found.contains("[D][X] return book (by: Jan 10 2020)"), found);
+            assertTrue(found.contains("[E][X] book fair"), found);
+            assertFalse(found.contains("read Book"), found);
+            assertTrue(ui.handleInput("find --archived -i BOOK", false).contains("read Book"));
+            assertTrue(ui.handleInput("find --archived fair OR pens", false).contains("book fair"));
+            assertFalse(ui.handleInput("find book", false).contains("book fair"), "Archived tasks should leave the list");
+            storage.close();
+
+            taskManager = new TaskManager();
+            storage = new Storage(taskManager, directory, true, 0, 1000);
+            commandParser = new CommandParser(taskManager, storage);
+            ui = new Ui(taskManager, commandParser);
+            storage.loadTasks(commandParser, ui);
+            try {
+                assertEquals(1, taskManager.getTasks().size());
+                assertEquals(2, storage.getArchive().getSegmentCount());
+                assertEquals(3, storage.getArchive().getTaskCount());
+                assertTrue(ui.handleInput("find --archived return", false).contains("return book"));
+            } finally {
+                storage.close();
+            }
+
+            // A torn index line from a crash is ignored, and the next segment is written over it.
+            Path archiveDirectory = directory.resolve("archive");
+            Files.writeString(archiveDirectory.resolve("index"), "segment-000003.gz 9", StandardOpenOption.APPEND);
+            Archive archive = new Archive(archiveDirectory);
+            assertEquals(2, archive.getSegmentCount());
+            Todo todo = new Todo("water plants");
+            todo.setId(99);
+            archive.append(List.of(todo));
+            archive = new Archive(archiveDirectory);
+            assertEquals(3, archive.getSegmentCount());
+            assertEquals(4, archive.getTaskCount());
+            List<Task> scanned = new ArrayList<>();
+            archive.scan(scanned::add);
+            assertEquals(List.of("return book", "read Book", "book fair", "water plants"), descriptions(scanned));
+            assertEquals(99, scanned.get(3).getId());
+            assertTrue(scanned.get(3).isComplete());
+
+            // An unreadable index line is skipped, and its segment file is not written over.
+            Files.writeString(archiveDirectory.resolve("index"), "segment-000004.gz many 1 2\n",
+                    StandardOpenOption.APPEND);
+            archive = new Archive(archiveDirectory);
+            assertEquals(3, archive.getSegmentCount());
+            // Archived again after a crash, so task 99 is in two segments.
+            Todo feed = new Todo("feed cat");
+            feed.setId(100);
+            archive.append(List.of(todo, feed));
+            assertTrue(Files.exists(archiveDirectory.resolve("segment-000005.gz")));
+            assertFalse(Files.exists(archiveDirectory.resolve("segment-000004.gz")));
+            archive = new Archive(archiveDirectory);
+            assertEquals(4, archive.getSegmentCount());
+            assertEquals(6, archive.getTaskCount());
+            scanned.clear();
+            archive.scan(scanned::add);
+            assertEquals(List.of("return book", "read Book", "book fair", "water plants", "feed cat"),
+                    descriptions(scanned));
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    public void testLoadingTaskFileAppliesLinesInFileOrder() throws Exception {
+        Path directory = Files.createTempDirectory("genesis");
+        try {
+            Files.writeString(directory.resolve("tasks.txt"),
+                    "todo a\ndelete 1\ntodo a\nmark 1\ntodo b\ntodo c\nunmark 1\nmark 3\ndelete 2\ntodo b\n");
+            taskManager = new TaskManager();
+            Storage storage = new Storage(taskManager, directory, true, 0, 1000, 60_000);
+            try {
+                CommandParser commandParser = new CommandParser(taskManager, storage);
+                storage.loadTasks(commandParser, new Ui(taskManager, commandParser));
+                List<Task> tasks = taskManager.getTasks();
+                assertEquals(List.of("a", "c", "b"), descriptions(tasks));
+                assertFalse(tasks.get(0).isComplete());
+                assertTrue(tasks.get(1).isComplete());
+                assertFalse(tasks.get(2).isComplete());
+                assertEquals(0, storage.getQueueDepth());
+            } finally {
+                storage.close();
+            }
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    public void testTaskFileParsesEmptyOneLineAndMultiChunkFiles() throws IOException {
+        Path file = Files.createTempFile("tasks", ".txt");
+        try {
+            TaskFile empty = TaskFile.read(file);
+            assertTrue(empty.getTasks().isEmpty());
+            assertTrue(empty.getOtherLines().isEmpty());
+
+            Files.writeString(file, "todo read book");
+            TaskFile oneLine = TaskFile.read(file);
+            assertEquals(1, oneLine.getTasks().size());
+            assertEquals("read book", oneLine.getTasks().get(0).getDescription());
+
+            StringBuilder text = new StringBuilder("#snapshot 7\r\n");
+            int count = 60000;
+            for (int i = 0; i < count; i++) {
+                text.append("deadline report number ").append(i).append(" /by 2024-03-01\n");
+            }
+            text.append("mark 2\ndeadline broken /by someday\n");
+            Files.writeString(file, text);
+            assertTrue(Files.size(file) > 2 << 20, "File should span several chunks");
+            TaskFile large = TaskFile.read(file);
+            assertEquals(count, large.getTasks().size());
+            for (int i = 0; i < count; i++) {
+                assertEquals("report number " + i, large.getTasks().get(i).getDescription());
+            }
+            assertEquals(List.of("mark 2"), large.getOtherLines());
+            assertEquals(List.of(count), large.getOtherLinePositions());
+            assertEquals(1, large.getErrors().size());
+            assertEquals(7, large.getGeneration());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testPagedStoreSplitsPagesByEncodedSize() throws Exception {
+        Path directory = Files.createTempDirectory("genesis");
+        try {
+            PagedTaskStore store = PagedTaskStore.open(directory, 4);
+            Task first = new Todo("short");
+            first.setId(10);
+            Task last = new Todo("b".repeat(PagedTaskStore.PAGE_SIZE - 100));
+            last.setId(30);
+            store.append(first);
+            store.append(last);
+            // Splitting [first, middle, last] by count would leave middle and last on one page.
+            Task middle = new Todo("m".repeat(PagedTaskStore.PAGE_SIZE - 100));
+            middle.setId(20);
+            store.insert(1, middle);
+            store.close();
+
+            store = PagedTaskStore.open(directory, 4);
+            assertEquals(3, store.size());
+            assertEquals(10, store.get(0).getId());
+            assertEquals(20, store.get(1).getId());
+            assertEquals(30, store.get(2).getId());
+            assertEquals(middle.getDescription(), store.findById(20).getDescription());
+            store.close();
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    public void testPagedStoreEvictsAndReloadsChangedPages() throws Exception {
+        Path directory = Files.createTempDirectory("genesis");
+        try {
+            PagedTaskStore store = PagedTaskStore.open(directory, 2);
+            int count = 3000;
+            for (int i = 0; i < count; i++) {
+                store.append(new Todo("todo number " + i));
+                assertTrue(store.getDirtyPageCount() <= 2, "Dirty pages should be written back on eviction");
+            }
+            for (int i = 0; i < count; i += 7) {
+                store.setComplete(i, true);
+            }
+            BitSet deleted = new BitSet();
+            deleted.set(100, 1100);
+            assertEquals(1000, store.delete(deleted).size());
+            store.close();
+
+            store = PagedTaskStore.open(directory, 2);
+            assertEquals(count - 1000, store.size());
+            assertEquals("todo number 99", store.get(99).getDescription());
+            assertEquals("todo number 1100", store.get(100).getDescription());
+            assertTrue(store.get(0).isComplete());
+            assertFalse(store.get(1).isComplete());
+            assertEquals(count + 1, store.getNextId());
+            String before = store.range(0, count).toString();
+            store.close();
+
+            // Without its directory, the store rebuilds it from the page headers.
+            Files.delete(directory.resolve("tasks.pages.dir"));
+            store = PagedTaskStore.open(directory, 2);
+            assertEquals(before, store.range(0, count).toString());
+            assertEquals(count + 1, store.getNextId());
+            store.close();
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    public void testPagedStoreRecoversFromCrashBetweenEvictionAndFlush() throws Exception {
+        Path directory = Files.createTempDirectory("genesis");
+        Path crashed = Files.createTempDirectory("genesis");
+        try {
+            PagedTaskStore store = PagedTaskStore.open(directory, 1);
+            int count = 2000;
+            for (int i = 0; i < count; i++) {
+                store.append(new Todo("todo number " + i));
+            }
+            store.close();
+
+            store = PagedTaskStore.open(directory, 1);
+            try {
+                BitSet deleted = new BitSet();
+                deleted.set(0, 10);
+                store.delete(deleted);
+                // Reading the last task evicts the first page, which is written back in place.
+                assertEquals("todo number " + (count - 1), store.get(count - 11).getDescription());
+                assertEquals(0, store.getDirtyPageCount());
+
+                // What a crash right now would leave on disk: the pages, and the directory of the last flush.
+                Files.copy(directory.resolve("tasks.pages"), crashed.resolve("tasks.pages"));
+                Files.copy(directory.resolve("tasks.pages.dir"), crashed.resolve("tasks.pages.dir"));
+            } finally {
+                store.close();
+            }
+
+            PagedTaskStore recovered = PagedTaskStore.open(crashed, 4);
+            try {
+                assertEquals(count - 10, recovered.size());
+                List<Task> tasks = recovered.range(0, count);
+                assertEquals(count - 10, tasks.size());
+                for (int i = 0; i < tasks.size(); i++) {
+                    assertEquals("todo number " + (i + 10), tasks.get(i).getDescription());
+                }
+                assertEquals(count + 1, recovered.getNextId());
+            } finally {
+                recovered.close();
+            }
+
+            // A page that fails its checksum while rebuilding stops the store from opening.
+            Files.delete(crashed.resolve("tasks.pages.dir"));
+            try (FileChannel channel = FileChannel.open(crashed.resolve("tasks.pages"),
+                    StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(new byte[] {42}), 2L * PagedTaskStore.PAGE_SIZE + 100);
+            }
+            assertThrows(IOException.class, () -> PagedTaskStore.open(crashed, 4));
+        } finally {
+            deleteRecursively(directory);
+            deleteRecursively(crashed);
+        }
+    }
+
+    @Test
+    public void testPagedTasksAreSnapshotsThatSurviveConcurrentDeletes() throws Exception {
+        Path directory = Files.createTempDirectory("genesis");
+        PagedTaskStore store = PagedTaskStore.open(directory, 2);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            PagedTaskManager pagedTaskManager = new PagedTaskManager(store);
+            int count = 2000;
+            for (int i = 0; i < count; i++) {
+                pagedTaskManager.addTask(new Todo("todo " + i), true);
+            }
+            pagedTaskManager.markTask(0);
+            List<Task> before = pagedTaskManager.getTasks();
+            pagedTaskManager.deleteTask(0);
+            assertEquals(count, before.size());
+            assertEquals("todo 0", before.get(0).getDescription());
+            assertEquals(count - 1, pagedTaskManager.size());
+            Todo clash = new Todo("forged");
+            clash.setId(before.get(1).getId());
+            BitSet first = new BitSet();
+            first.set(0);
+            assertThrows(GenesisException.class, () -> pagedTaskManager.insertTasks(first, List.of(clash)));
+            assertEquals(count - 1, pagedTaskManager.size());
+
+            Metrics metrics = new Metrics(pagedTaskManager, null);
+            Query query = Query.parse(Command.parse("query type:todo done:false sort:-id"));
+            Future<?> deletes = pool.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    pagedTaskManager.deleteTask(pagedTaskManager.size() - 1);
+                }
+                return null;
+            });
+            while (!deletes.isDone()) {
+                Integer todos = metrics.getTaskCounts().get("todo");
+                assertTrue(todos >= count - 501 && todos <= count - 1, "Counted " + todos);
+                query.run(pagedTaskManager);
+            }
+            deletes.get(30, TimeUnit.SECONDS);
+            assertEquals(count - 501, (int) metrics.getTaskCounts().get("todo"));
+            assertEquals(0, (int) metrics.getTaskCounts().get("done"));
+        } finally {
+            pool.shutdown();
+            store.close();
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    public void testPagedTransactionRollbackRestoresPages() throws Exception {
+        Path directory = Files.createTempDirectory("genesis");
+        try {
+            PagedTaskStore store = PagedTaskStore.open(directory, 2);
+            PagedTaskManager pagedTaskManager = new PagedTaskManager(store);
+            for (int i = 0; i < 500; i++) {
+                pagedTaskManager.addTask(new Todo("todo " + i), true);
+            }
+            String before = pagedTaskManager.listTasks(0, 500);
+
+            assertThrows(GenesisException.class, () -> pagedTaskManager.transactionally(() -> {
+                for (int i = 0; i < 500; i++) {
+                    pagedTaskManager.addTask(new Todo("extra " + i), true);
+                }
+                pagedTaskManager.markTask(3);
+                BitSet selected = new BitSet();
+                selected.set(0, 400);
+                pagedTaskManager.deleteTasks(selected);
+                return pagedTaskManager.deleteTask(5000);
+            }));
+
+            assertEquals(before, pagedTaskManager.listTasks(0, 500));
+            assertEquals(500, store.size());
+            assertEquals(0, store.getDirtyPageCount());
+            pagedTaskManager.addTask(new Todo("extra 0"), true);
+            store.close();
+
+            store = PagedTaskStore.open(directory, 2);
+            assertEquals(501, store.size());
+            assertFalse(store.get(3).isComplete());
+            assertEquals("extra 0", store.get(500).getDescription());
+            store.close();
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    public void testBatchFilesAreConfinedToDataDirectory() throws Exception {
+        Path root = Files.createTempDirectory("genesis");
+        try {
+            Path dataDirectory = Files.createDirectory(root.resolve("data"));
+            Path secret = Files.writeString(root.resolve("secret.txt"), "todo top secret\nnot a command\n");
+            Files.writeString(dataDirectory.resolve("ok.txt"), "todo read book\nmark 1\n");
+            Files.writeString(dataDirectory.resolve("bad.txt"), "todo write essay\nhidden words here\n");
+            Files.createSymbolicLink(dataDirectory.resolve("link.txt"), secret);
+
+            taskManager = new TaskManager();
+            Storage storage = new Storage(taskManager, dataDirectory, true, 0, 1000);
+            Ui ui = new Ui(taskManager, new CommandParser(taskManager, storage));
+            try {
+                assertTrue(ui.handleInput("batch ok.txt", false).startsWith("Done!"));
+                assertTrue(taskManager.getTasks().get(0).isComplete());
+
+                for (String name : List.of("../secret.txt", secret.toString(), "link.txt")) {
+                    String response = ui.handleInput("batch " + name, false);
+                    assertTrue(response.contains("must be in the data directory"), response);
+                    assertFalse(response.contains("top secret"), response);
+                }
+                String response = ui.handleInput("batch bad.txt", false);
+                assertTrue(response.startsWith("Line 2 of the batch"), response);
+                assertFalse(response.contains("hidden"), response);
+                assertEquals(1, taskManager.getTasks().size());
+            } finally {
+                storage.close();
+            }
+        } finally {
+            deleteRecursively(root);
+        }
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void testQueryPlannerPicksNarrowestIndex() throws GenesisException {
+        taskManager = new TaskManager();
+        LocalDate start = LocalDate.of(2024, 1, 1);
+        for (int i = 0; i < 300; i++) {
+            taskManager.addTask(new Todo("common chore " + i), true);
+        }
+        for (int i = 0; i < 10; i++) {
+            taskManager.addTask(new Event("meeting " + i, start.plusDays(i), start.plusDays(i + 1)), true);
+            taskManager.addTask(new Deadline("report " + i, start.plusDays(i)), true);
+        }
+        taskManager.addTask(new Todo("feed the zebra"), true);
+        BitSet done = new BitSet();
+        done.set(0, 100);
+        taskManager.markTasks(done);
+
+        assertPlan("query text:Zebra explain", "text index for \"zebra\"");
+        assertPlan("query   type:event\tafter:2024-01-03 explain", "event index");
+        assertPlan("query type:deadline done:false before:2024-01-05 sort:-date", "due-date index");
+        assertPlan("query done:true text:chore", "text index for \"chore\"");
+        assertPlan("query done:true limit:5", "scan");
+
+        Query.Result result = Query.parse(Command.parse("query type:deadline done:false before:2024-01-05 sort:-date"))
+                .run(taskManager);
+        assertEquals(4, result.getTasks().size());
+        assertEquals("report 3", result.getTasks().get(0).getDescription());
+        assertEquals(5, Query.parse(Command.parse("query done:true limit:5")).run(taskManager).getTasks().size());
+        assertThrows(GenesisException.class, () -> Query.parse(Command.parse("query type:note")));
+    }
+
+    private void assertPlan(String input, String path) throws GenesisException {
+        Query query = Query.parse(Command.parse(input));
+        Query.Result result = query.run(taskManager);
+        assertTrue(result.getPlan().startsWith("Plan: " + path), result.getPlan());
+        List<Task> expected = new ArrayList<>();
+        for (Task task : taskManager.getTasks()) {
+            if (query.matches(task)) {
+                expected.add(task);
+            }
+        }
+        assertTrue(expected.containsAll(result.getTasks()));
+        if (!input.contains("limit:")) {
+            assertEquals(expected.size(), result.getTasks().size());
+        }
+    }
 }